@@ -1,4 +1,46 @@
 package com.example.dosh.api.controller;
 
+import com.example.dosh.common.ApiResponse;
+import com.example.dosh.impl.chat.ChatExecutors;
+import com.example.dosh.integration.intent.GenerationKeywordMatcher;
+import com.example.dosh.integration.intent.IntentClient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
 public class AminController {
+
+    private final ChatExecutors chatExecutors;
+    private final IntentClient intentClient;
+    private final GenerationKeywordMatcher keywordMatcher;
+
+    /**
+     * Queue depth, active threads and rejections of the chat pools.
+     */
+    @GetMapping("/executors")
+    public ApiResponse<List<ChatExecutors.PoolStats>> executors() {
+        return ApiResponse.ok(chatExecutors.getStats());
+    }
+
+    @GetMapping("/intent-cache")
+    public ApiResponse<Map<String, Object>> intentCache() {
+        return ApiResponse.ok(intentClient.getCacheStats());
+    }
+
+    /**
+     * Re-read the generation keyword list now instead of waiting for the file watcher.
+     */
+    @PostMapping("/intent-keywords/reload")
+    public ApiResponse<List<String>> reloadIntentKeywords() {
+        keywordMatcher.reload();
+        return ApiResponse.ok(keywordMatcher.getKeywords());
+    }
 }
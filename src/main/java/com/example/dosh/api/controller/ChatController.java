@@ -20,4 +20,12 @@ public class ChatController {
     public SseEmitter stream(@RequestBody ChatRequestDTO req) {
         return chatService.streamChat(req);
     }
+
+    /**
+     * Non-blocking variant of {@link #stream}: no server thread is held per open chat.
+     */
+    @PostMapping(value = "/stream-async", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAsync(@RequestBody ChatRequestDTO req) {
+        return chatService.streamChatAsync(req);
+    }
 }
@@ -1,20 +1,32 @@
 package com.example.dosh.api.controller;
 
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.model.dto.video.VideoJobDTO;
+import com.example.dosh.service.video.VideoJobService;
 import com.example.dosh.service.video.VideoService;
+import com.example.dosh.util.SizeLimitedInputStream;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/video")
@@ -23,6 +35,8 @@ import java.util.Map;
 public class VideoController {
 
     private final VideoService videoService;
+    private final VideoJobService videoJobService;
+    private final VideoProcessingConfig processingConfig;
 
     @PostMapping("/auto-generate")
     public ResponseEntity<Map<String, Object>> autoGenerate(
@@ -35,6 +49,82 @@ public class VideoController {
         return ResponseEntity.ok(result);
     }
 
+    @PostMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "prompt", defaultValue = "Highlight interesting parts") String prompt,
+            @RequestParam(value = "targetDuration", defaultValue = "60.0") Double targetDuration) {
+
+        log.info("Received video job for file: {}", file.getOriginalFilename());
+        try {
+            return ResponseEntity.accepted().body(Map.of("jobId", videoJobService.submit(file, prompt, targetDuration)));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body(Map.of("error", "Too many video jobs queued, try again later"));
+        }
+    }
+
+    /**
+     * Raw-body upload: the request body is the video itself and goes straight to MinIO
+     * without being spooled by the multipart resolver.
+     */
+    @PostMapping("/jobs/stream")
+    public ResponseEntity<Map<String, Object>> submitStreamJob(
+            HttpServletRequest request,
+            @RequestParam(value = "filename", defaultValue = "upload.mp4") String filename,
+            @RequestParam(value = "prompt", defaultValue = "Highlight interesting parts") String prompt,
+            @RequestParam(value = "targetDuration", defaultValue = "60.0") Double targetDuration) throws IOException {
+
+        log.info("Received streamed video job for file: {} ({} bytes)", filename, request.getContentLengthLong());
+        long maxBytes = processingConfig.getStreamUploadMaxSize().toBytes();
+        if (request.getContentLengthLong() > maxBytes) {
+            return uploadTooLarge(maxBytes);
+        }
+        try {
+            // Chunked bodies carry no length, so the cap is also enforced while reading
+            InputStream body = new SizeLimitedInputStream(request.getInputStream(), maxBytes);
+            String jobId = videoJobService.submitStream(body, filename, request.getContentType(), prompt, targetDuration);
+            return ResponseEntity.accepted().body(Map.of("jobId", jobId));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body(Map.of("error", "Too many video jobs queued, try again later"));
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SizeLimitedInputStream.LimitExceededException) {
+                return uploadTooLarge(maxBytes);
+            }
+            throw e;
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> uploadTooLarge(long maxBytes) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of("error", "Upload exceeds " + DataSize.ofBytes(maxBytes).toMegabytes() + "MB"));
+    }
+
+    @PostMapping("/jobs/paths")
+    public ResponseEntity<Map<String, Object>> submitJobFromPaths(
+            @RequestParam("videoUrls") List<String> videoUrls,
+            @RequestParam(value = "prompt", defaultValue = "Highlight interesting parts") String prompt,
+            @RequestParam(value = "targetDuration", defaultValue = "60.0") Double targetDuration) {
+
+        log.info("Received video job for {} sources", videoUrls.size());
+        try {
+            return ResponseEntity.accepted().body(Map.of("jobId", videoJobService.submitFromPaths(videoUrls, prompt, targetDuration)));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body(Map.of("error", "Too many video jobs queued, try again later"));
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<VideoJobDTO> getJob(@PathVariable String jobId) {
+        VideoJobDTO job = videoJobService.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> jobEvents(@PathVariable String jobId) {
+        SseEmitter emitter = videoJobService.subscribe(jobId);
+        return emitter != null ? ResponseEntity.ok(emitter) : ResponseEntity.notFound().build();
+    }
+
     @PostMapping("/upload")
     public ResponseEntity<Map<String, String>> uploadVideo(@RequestParam("file") MultipartFile file) {
         log.info("Received upload request for file: {}", file.getOriginalFilename());
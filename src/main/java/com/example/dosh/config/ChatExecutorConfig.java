@@ -0,0 +1,50 @@
+package com.example.dosh.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Thread pools for chat turns, one per intent so long image and video runs cannot starve
+ * plain chat. Requests beyond threads + queue are turned away with a "busy" event.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.executor")
+@Data
+public class ChatExecutorConfig {
+
+    /**
+     * Intent detection and text chat; the ChatGLM stream itself is asynchronous.
+     */
+    private Pool chat = new Pool(16, 200);
+
+    /**
+     * ComfyUI generations, each blocking for minutes.
+     */
+    private Pool image = new Pool(4, 20);
+
+    /**
+     * ffmpeg/analysis runs, each blocking for minutes.
+     */
+    private Pool video = new Pool(2, 10);
+
+    /**
+     * SSE writes of ComfyUI progress, kept off the ComfyUI socket thread. Each generation
+     * has at most one write queued or running here.
+     */
+    private Pool progress = new Pool(4, 50);
+
+    @Data
+    public static class Pool {
+        private int threads;
+        private int queueCapacity;
+
+        public Pool() {
+        }
+
+        public Pool(int threads, int queueCapacity) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
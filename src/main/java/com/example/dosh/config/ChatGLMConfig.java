@@ -16,4 +16,23 @@ public class ChatGLMConfig {
 
     @Value("${chatglm.model:glm-4.5}")
     private String model;
+
+    /**
+     * HttpClient threads for async calls; they only parse, never block on a chat client.
+     */
+    @Value("${chatglm.http-threads:2}")
+    private int httpThreads;
+
+    /**
+     * Threads writing async stream deltas to chat clients. A slow client holds one while
+     * its delta is written; other streams wait for a free one.
+     */
+    @Value("${chatglm.write-threads:16}")
+    private int writeThreads;
+
+    /**
+     * Fail an async stream when ChatGLM sends nothing for this long, 0 = never.
+     */
+    @Value("${chatglm.stream-idle-timeout-seconds:60}")
+    private int streamIdleTimeoutSeconds;
 }
@@ -4,9 +4,57 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "comfyui")
 @Data
 public class ComfyUIConfig {
     private String serverAddress;
+
+    /**
+     * All ComfyUI backends as host:port. Empty = just {@code serverAddress}.
+     */
+    private List<String> servers = new ArrayList<>();
+
+    /**
+     * How often each backend's /queue is polled for load and health.
+     */
+    private int healthCheckSeconds = 10;
+
+    /**
+     * Consecutive failed polls before a backend counts as down. Its prompts then fail over
+     * if another backend is healthy; otherwise they keep waiting for it.
+     */
+    private int downAfterFailures = 3;
+
+    /**
+     * When to free ComfyUI's models: "idle" keeps them loaded between prompts and frees them
+     * after idle-unload-seconds without work or when a different workflow comes in;
+     * "always" frees before every prompt; "never" leaves it to ComfyUI.
+     */
+    private String modelResidency = "idle";
+
+    private int idleUnloadSeconds = 300;
+
+    /**
+     * Identical image prompts arriving within this window run as one ComfyUI batch.
+     * 0 = every request is its own prompt.
+     */
+    private long imageBatchWindowMs = 200;
+
+    private int imageBatchMaxSize = 4;
+
+    /**
+     * Generated outputs fetched from /view and uploaded to MinIO in parallel.
+     */
+    private int outputFetchConcurrency = 4;
+
+    public List<String> resolveServers() {
+        if (servers != null && !servers.isEmpty()) {
+            return servers;
+        }
+        return serverAddress != null ? List.of(serverAddress) : List.of();
+    }
 }
@@ -13,4 +13,22 @@ public class IntentConfig {
 
     @Value("${ai.intent.provider:chatglm}")
     private String provider; // "chatglm" or "local"
+
+    @Value("${ai.intent.cache-size:5000}")
+    private int cacheSize;
+
+    @Value("${ai.intent.cache-ttl-minutes:60}")
+    private long cacheTtlMinutes; // 0 = entries never expire
+
+    @Value("${ai.intent.embedded-model:classpath:intent/intent-model.tsv}")
+    private String embeddedModel; // empty = no embedded classifier
+
+    @Value("${ai.intent.embedded-threshold:0.6}")
+    private double embeddedThreshold; // below this the provider is asked; above 1 = always ask
+
+    @Value("${ai.intent.keywords-file:classpath:intent/generation-keywords.txt}")
+    private String keywordsFile;
+
+    @Value("${ai.intent.keywords-reload-seconds:30}")
+    private long keywordsReloadSeconds; // how often a file: keyword list is checked for changes, 0 = never
 }
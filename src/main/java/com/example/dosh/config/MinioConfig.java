@@ -1,8 +1,10 @@
 package com.example.dosh.config;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 @Configuration
 @ConfigurationProperties(prefix = "minio")
@@ -12,6 +14,9 @@ public class MinioConfig {
     private String accessKey;
     private String secretKey;
     private String bucket;
+    // Streaming uploads: size of each multipart part and how many parts may be in flight
+    private DataSize uploadPartSize = DataSize.ofMegabytes(16);
+    private int uploadConcurrency = 4;
 
     @org.springframework.context.annotation.Bean
     public MinioClient minioClient(){
@@ -20,4 +25,12 @@ public class MinioConfig {
                 .credentials(accessKey,secretKey)
                 .build();
     }
+
+    @org.springframework.context.annotation.Bean
+    public MinioAsyncClient minioAsyncClient(){
+        return MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey,secretKey)
+                .build();
+    }
 }
@@ -0,0 +1,147 @@
+package com.example.dosh.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+@ConfigurationProperties(prefix = "video.processing")
+@Data
+public class VideoProcessingConfig {
+    /**
+     * Max number of ffmpeg extraction processes running at once on this node.
+     * 0 = derive from available CPU cores.
+     */
+    private int extractionConcurrency = 0;
+
+    /**
+     * Max number of AI analysis requests in flight at once on this node.
+     */
+    private int analysisConcurrency = 4;
+
+    /**
+     * Deadline for a single analysis request, including any video download.
+     */
+    private int analysisTimeoutSeconds = 600;
+
+    /**
+     * Cut with keyframe-aligned -c copy and merge without re-encoding when the
+     * sources allow it. Clips that can't be copied are re-encoded to match.
+     */
+    private boolean streamCopy = true;
+
+    /**
+     * "clips" extracts each clip to a file and merges them; "filtergraph" renders
+     * the final video straight from the sources in one ffmpeg pass.
+     */
+    private String renderMode = "clips";
+
+    /**
+     * Number of ffprobe results kept in memory, keyed by path + mtime/size or object ETag.
+     */
+    private int metadataCacheSize = 512;
+
+    /**
+     * Max ffprobe processes a single batched probe runs at once.
+     */
+    private int probeConcurrency = 4;
+
+    /**
+     * Seed for trim offsets so the same input renders the same output. null = random.
+     */
+    private Long trimSeed;
+
+    /**
+     * Async jobs (/api/video/jobs) run on their own pool so request threads are never held.
+     */
+    private int jobConcurrency = 2;
+
+    /**
+     * Jobs waiting for a worker beyond this are rejected.
+     */
+    private int jobQueueCapacity = 50;
+
+    /**
+     * How long finished jobs (and their results) can still be fetched.
+     */
+    private int jobRetentionMinutes = 24 * 60;
+
+    /**
+     * Largest body POST /api/video/jobs/stream accepts; bigger uploads get 413.
+     */
+    private DataSize streamUploadMaxSize = DataSize.ofMegabytes(500);
+
+    /**
+     * Where source objects from our bucket are cached on local disk for probing and cutting.
+     */
+    private String sourceCacheDir = "cache/sources";
+
+    /**
+     * Disk budget for the source cache, least recently used files go first. 0 = disabled.
+     */
+    private DataSize sourceCacheMaxSize = DataSize.ofGigabytes(10);
+
+    /**
+     * Max source downloads running at once.
+     */
+    private int sourceFetchConcurrency = 4;
+
+    /**
+     * Send the model a low-res, 1fps proxy instead of the original. Clips are still cut
+     * from the original.
+     */
+    private boolean analysisProxy = false;
+
+    private int analysisProxyHeight = 360;
+
+    private int analysisProxyMaxBitrateKbps = 500;
+
+    /**
+     * Bitrate is lowered further for long sources so the proxy stays under this size.
+     */
+    private DataSize analysisProxyMaxSize = DataSize.ofMegabytes(50);
+
+    /**
+     * Number of proxies kept on disk under {@code analysis-proxy-dir}.
+     */
+    private int analysisProxyCacheSize = 256;
+
+    private String analysisProxyDir = "cache/proxies";
+
+    /**
+     * Sources longer than this are analysed as overlapping windows of this length, all in
+     * parallel, instead of in one request. 0 = never split.
+     */
+    private int analysisSegmentSeconds = 0;
+
+    /**
+     * Overlap between consecutive windows so events on a boundary are seen whole.
+     */
+    private int analysisSegmentOverlapSeconds = 15;
+
+    /**
+     * Where analysis results are remembered across runs: "local" (analysis-cache-dir),
+     * "minio" (our bucket, under analysis-cache-prefix) or "none".
+     */
+    private String analysisCacheStore = "local";
+
+    private String analysisCacheDir = "cache/analysis";
+
+    private String analysisCachePrefix = "analysis-cache/";
+
+    private int analysisCacheTtlHours = 24 * 7;
+
+    /**
+     * Stored results beyond this are dropped oldest first.
+     */
+    private int analysisCacheMaxEntries = 10000;
+
+    public int resolveExtractionConcurrency() {
+        if (extractionConcurrency > 0) {
+            return extractionConcurrency;
+        }
+        // libx264 is itself multi-threaded, so leave a few cores per process
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    }
+}
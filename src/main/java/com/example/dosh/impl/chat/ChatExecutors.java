@@ -0,0 +1,113 @@
+package com.example.dosh.impl.chat;
+
+import com.example.dosh.config.ChatExecutorConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One bounded pool per intent class ("chat", "image", "video"), plus "progress" for writing
+ * generation progress to SSE clients. A full pool rejects with
+ * {@link RejectedExecutionException} instead of growing, and counts the rejection.
+ */
+@Slf4j
+@Component
+public class ChatExecutors {
+
+    public static final String CHAT = "chat";
+    public static final String IMAGE = "image";
+    public static final String VIDEO = "video";
+    public static final String PROGRESS = "progress";
+
+    private final Map<String, Pool> pools = new LinkedHashMap<>();
+
+    public ChatExecutors(ChatExecutorConfig config) {
+        pools.put(CHAT, new Pool(CHAT, config.getChat()));
+        pools.put(IMAGE, new Pool(IMAGE, config.getImage()));
+        pools.put(VIDEO, new Pool(VIDEO, config.getVideo()));
+        pools.put(PROGRESS, new Pool(PROGRESS, config.getProgress()));
+    }
+
+    /**
+     * @throws RejectedExecutionException when the pool and its queue are full
+     */
+    public void execute(String intentClass, Runnable task) {
+        Pool pool = pools.get(intentClass);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown intent class: " + intentClass);
+        }
+        try {
+            pool.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            pool.rejected.incrementAndGet();
+            log.warn("{} pool full ({} active, {} queued), rejecting request",
+                    intentClass, pool.executor.getActiveCount(), pool.executor.getQueue().size());
+            throw e;
+        }
+    }
+
+    public List<PoolStats> getStats() {
+        List<PoolStats> stats = new ArrayList<>();
+        pools.values().forEach(pool -> stats.add(new PoolStats(pool)));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(pool -> pool.executor.shutdownNow());
+    }
+
+    private static class Pool {
+        private final ThreadPoolExecutor executor;
+        private final int queueCapacity;
+        private final AtomicLong rejected = new AtomicLong();
+        private final String name;
+
+        Pool(String name, ChatExecutorConfig.Pool config) {
+            this.name = name;
+            int threads = Math.max(1, config.getThreads());
+            this.queueCapacity = Math.max(1, config.getQueueCapacity());
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                        Thread t = new Thread(r, "chat-" + name + "-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @Getter
+    public static class PoolStats {
+        private final String name;
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final int queueCapacity;
+        private final long completed;
+        private final long rejected;
+
+        PoolStats(Pool pool) {
+            this.name = pool.name;
+            this.threads = pool.executor.getMaximumPoolSize();
+            this.active = pool.executor.getActiveCount();
+            this.queued = pool.executor.getQueue().size();
+            this.queueCapacity = pool.queueCapacity;
+            this.completed = pool.executor.getCompletedTaskCount();
+            this.rejected = pool.rejected.get();
+        }
+    }
+}
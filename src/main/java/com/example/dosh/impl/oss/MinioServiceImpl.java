@@ -2,10 +2,14 @@ package com.example.dosh.impl.oss;
 import com.example.dosh.config.MinioConfig;
 import com.example.dosh.service.oss.MinioService;
 import io.minio.*;
+import com.google.common.collect.ImmutableMultimap;
+import io.minio.errors.ErrorResponseException;
 import io.minio.http.Method;
 import io.minio.messages.Expiration;
+import io.minio.messages.Item;
 import io.minio.messages.LifecycleConfiguration;
 import io.minio.messages.LifecycleRule;
+import io.minio.messages.Part;
 import io.minio.messages.RuleFilter;
 import io.minio.messages.Status;
 import jakarta.annotation.PostConstruct;
@@ -14,18 +18,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class MinioServiceImpl implements MinioService {
+    // S3 rejects multipart parts smaller than this, except the last one
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
     @Autowired
     private MinioConfig minioConfig;
     @Autowired
     private MinioClient minioClient;
+    @Autowired
+    private MinioAsyncClient minioAsyncClient;
 
     @PostConstruct
     public void init() {
@@ -115,6 +133,97 @@ public class MinioServiceImpl implements MinioService {
         return objectName;
     }
 
+    @Override
+    public String uploadStream(InputStream in, String fileExtension, String contentType, OutputStream tee) throws Exception {
+        String bucket = minioConfig.getBucket();
+        String objectName = UUID.randomUUID().toString() + (fileExtension != null ? fileExtension : "");
+        int partSize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(MIN_PART_SIZE, minioConfig.getUploadPartSize().toBytes()));
+        String type = contentType != null ? contentType : "application/octet-stream";
+
+        byte[] part = readPart(in, partSize, tee);
+        if (part.length < partSize) {
+            // Fits in one part, a plain put is cheaper than a multipart round trip
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectName)
+                            .stream(new ByteArrayInputStream(part), part.length, -1)
+                            .contentType(type)
+                            .build());
+            return objectName;
+        }
+
+        String uploadId = minioAsyncClient.createMultipartUploadAsync(bucket, null, objectName,
+                ImmutableMultimap.of("Content-Type", type), null).get().result().uploadId();
+
+        // Each in-flight part holds its buffer, so the permits also bound memory
+        Semaphore slots = new Semaphore(Math.max(1, minioConfig.getUploadConcurrency()));
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<Part>> parts = new ArrayList<>();
+        try {
+            while (part.length > 0 && !failed.get()) {
+                slots.acquire();
+                int partNumber = parts.size() + 1;
+                byte[] data = part;
+                parts.add(minioAsyncClient.uploadPartAsync(bucket, null, objectName, data, data.length, uploadId, partNumber, null, null)
+                        .thenApply(response -> new Part(partNumber, response.etag()))
+                        .whenComplete((p, e) -> {
+                            if (e != null) failed.set(true);
+                            slots.release();
+                        }));
+                if (data.length < partSize) {
+                    break;
+                }
+                part = readPart(in, partSize, tee);
+            }
+
+            Part[] uploaded = new Part[parts.size()];
+            for (int i = 0; i < uploaded.length; i++) {
+                uploaded[i] = parts.get(i).get();
+            }
+            minioAsyncClient.completeMultipartUploadAsync(bucket, null, objectName, uploadId, uploaded, null, null).get();
+            return objectName;
+        } catch (Exception e) {
+            parts.forEach(p -> p.cancel(true));
+            try {
+                minioAsyncClient.abortMultipartUploadAsync(bucket, null, objectName, uploadId, null, null).get();
+            } catch (Exception abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String uploadStream(InputStream in, long size, String fileExtension, String contentType) throws Exception {
+        if (size < 0) {
+            return uploadStream(in, fileExtension, contentType, null);
+        }
+        String objectName = UUID.randomUUID().toString() + (fileExtension != null ? fileExtension : "");
+        minioClient.putObject(
+                PutObjectArgs.builder()
+                        .bucket(minioConfig.getBucket())
+                        .object(objectName)
+                        .stream(in, size, -1)
+                        .contentType(contentType != null ? contentType : "application/octet-stream")
+                        .build());
+        return objectName;
+    }
+
+    @Override
+    public String uploadBuffer(ByteBuffer data, String fileExtension, String contentType) throws Exception {
+        ByteBuffer view = data.duplicate();
+        return uploadStream(new ByteBufferInputStream(view), view.remaining(), fileExtension, contentType);
+    }
+
+    private byte[] readPart(InputStream in, int partSize, OutputStream tee) throws java.io.IOException {
+        byte[] part = in.readNBytes(partSize);
+        if (tee != null && part.length > 0) {
+            tee.write(part);
+        }
+        return part;
+    }
+
     /**
      * get file url from minio
      * @param objectName
@@ -146,4 +255,116 @@ public class MinioServiceImpl implements MinioService {
                         .build());
     }
 
+    @Override
+    public String objectNameFromUrl(String url) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url);
+            URI endpoint = new URI(minioConfig.getEndpoint());
+            if (!Objects.equals(uri.getHost(), endpoint.getHost()) || uri.getPort() != endpoint.getPort()) {
+                return null;
+            }
+            String prefix = "/" + minioConfig.getBucket() + "/";
+            String path = uri.getPath();
+            return path != null && path.startsWith(prefix) ? path.substring(prefix.length()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getObjectETag(String objectName) throws Exception {
+        return minioClient.statObject(
+                StatObjectArgs.builder()
+                        .bucket(minioConfig.getBucket())
+                        .object(objectName)
+                        .build()).etag();
+    }
+
+    @Override
+    public void downloadObject(String objectName, java.nio.file.Path target) throws Exception {
+        try (InputStream in = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(minioConfig.getBucket())
+                        .object(objectName)
+                        .build())) {
+            java.nio.file.Files.copy(in, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void putBytes(String objectName, byte[] content, String contentType) throws Exception {
+        minioClient.putObject(
+                PutObjectArgs.builder()
+                        .bucket(minioConfig.getBucket())
+                        .object(objectName)
+                        .stream(new ByteArrayInputStream(content), content.length, -1)
+                        .contentType(contentType)
+                        .build());
+    }
+
+    @Override
+    public byte[] getBytes(String objectName) throws Exception {
+        try (InputStream in = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(minioConfig.getBucket())
+                        .object(objectName)
+                        .build())) {
+            return in.readAllBytes();
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public java.util.Map<String, Long> listObjects(String prefix) throws Exception {
+        java.util.Map<String, Long> objects = new java.util.LinkedHashMap<>();
+        for (Result<Item> result : minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(minioConfig.getBucket())
+                        .prefix(prefix)
+                        .recursive(true)
+                        .build())) {
+            Item item = result.get();
+            objects.put(item.objectName(), item.lastModified().toInstant().toEpochMilli());
+        }
+        return objects;
+    }
+
+    // Reads a buffer in place instead of copying it into a byte[] first
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
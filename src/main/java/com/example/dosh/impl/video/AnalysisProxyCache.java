@@ -0,0 +1,211 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.model.dto.video.VideoMetadata;
+import com.example.dosh.service.video.VideoMetadataService;
+import com.example.dosh.util.FFmpegUtils;
+import com.example.dosh.util.LruCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Low-res 1fps copies of sources for the analysis model, which only samples one frame
+ * per second anyway. Proxies are kept on disk per source content, so re-analysing the
+ * same video with another prompt skips the transcode. Callers lease a proxy for as long as
+ * they upload it; an evicted proxy is only deleted once its last lease is closed. Every
+ * build writes a file of its own, so a rebuild never overwrites, and a deferred delete
+ * never removes, the file of another build for the same source.
+ */
+@Slf4j
+@Component
+public class AnalysisProxyCache {
+
+    private static final int PROXY_FPS = 1;
+    private static final int MIN_BITRATE_KBPS = 64;
+    private static final String FILE_PREFIX = "proxy_";
+
+    private final FFmpegUtils ffmpegUtils;
+    private final VideoMetadataService metadataService;
+    private final VideoProcessingConfig config;
+    private final Path proxyDir;
+    private final LruCache<String, Proxy> proxies;
+    private final Map<String, CompletableFuture<Proxy>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong builds = new AtomicLong();
+
+    public AnalysisProxyCache(FFmpegUtils ffmpegUtils, VideoMetadataService metadataService, VideoProcessingConfig config) {
+        this.ffmpegUtils = ffmpegUtils;
+        this.metadataService = metadataService;
+        this.config = config;
+        this.proxyDir = Paths.get(config.getAnalysisProxyDir()).toAbsolutePath();
+        this.proxies = new LruCache<>(Math.max(1, config.getAnalysisProxyCacheSize()), 0, (key, proxy) -> proxy.evict());
+
+        if (config.isAnalysisProxy()) {
+            try {
+                CacheDirectory.claim(proxyDir, "proxy", FILE_PREFIX);
+            } catch (IOException e) {
+                log.warn("Could not reset analysis proxy dir {}: {}", proxyDir, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isAnalysisProxy();
+    }
+
+    /**
+     * @param mediaPath local file or URL ffmpeg can read
+     * @return a lease on the proxy, to be closed once it has been sent; null if it could not be
+     * made and the original should be used
+     */
+    public Lease getProxy(String mediaPath) {
+        String key = cacheKey(mediaPath);
+        while (true) {
+            Proxy cached = proxies.get(key);
+            if (cached != null && cached.pin()) {
+                if (new File(cached.path).exists()) {
+                    return new Lease(cached);
+                }
+                // File went missing; retire this proxy and build a new one under a new name
+                proxies.remove(key);
+                cached.evict();
+                cached.unpin();
+            }
+
+            CompletableFuture<Proxy> build = new CompletableFuture<>();
+            CompletableFuture<Proxy> existing = inFlight.putIfAbsent(key, build);
+            if (existing != null) {
+                if (existing.join() == null) {
+                    return null;
+                }
+                // Built by someone else; lease it from the cache
+                continue;
+            }
+            try {
+                Proxy proxy = buildProxy(mediaPath, key);
+                if (proxy != null) {
+                    proxy.pin();
+                    proxies.put(key, proxy);
+                }
+                build.complete(proxy);
+                return proxy != null ? new Lease(proxy) : null;
+            } catch (RuntimeException e) {
+                build.complete(null);
+                throw e;
+            } finally {
+                inFlight.remove(key, build);
+            }
+        }
+    }
+
+    private Proxy buildProxy(String mediaPath, String key) {
+        VideoMetadata meta = metadataService.getMetadata(mediaPath);
+        int bitrate = config.getAnalysisProxyMaxBitrateKbps();
+        if (meta != null && meta.getDuration() > 0) {
+            // Leave ~10% of the size budget for container overhead
+            long budgetKbps = (long) (config.getAnalysisProxyMaxSize().toBytes() * 8 * 0.9 / 1000 / meta.getDuration());
+            bitrate = (int) Math.max(MIN_BITRATE_KBPS, Math.min(bitrate, budgetKbps));
+        }
+
+        Path output = proxyDir.resolve(fileName(key));
+        long start = System.currentTimeMillis();
+        try {
+            ffmpegUtils.createAnalysisProxy(mediaPath, output.toString(), config.getAnalysisProxyHeight(), PROXY_FPS, bitrate);
+            log.info("Analysis proxy for {} built in {} ms ({} KB)", mediaPath,
+                    System.currentTimeMillis() - start, output.toFile().length() / 1024);
+            return new Proxy(output.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn("Could not build analysis proxy for {}, sending the original: {}", mediaPath, e.getMessage());
+            output.toFile().delete();
+            return null;
+        }
+    }
+
+    private String cacheKey(String mediaPath) {
+        if (mediaPath.startsWith("http://") || mediaPath.startsWith("https://")) {
+            return "url:" + mediaPath;
+        }
+        // Cached sources are named after their ETag, so path + mtime + size tracks content
+        File file = new File(mediaPath);
+        return "file:" + file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    private String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return FILE_PREFIX + HexFormat.of().formatHex(digest, 0, 16) + "_" + builds.incrementAndGet() + ".mp4";
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Proxy {
+        private final String path;
+        private int pins;
+        private boolean evicted;
+
+        Proxy(String path) {
+            this.path = path;
+        }
+
+        synchronized boolean pin() {
+            if (evicted) {
+                return false;
+            }
+            pins++;
+            return true;
+        }
+
+        synchronized void unpin() {
+            pins--;
+            if (evicted && pins == 0) {
+                new File(path).delete();
+            }
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            if (pins == 0) {
+                new File(path).delete();
+            }
+        }
+    }
+
+    /**
+     * A proxy that stays on disk until the lease is closed.
+     */
+    public static class Lease implements AutoCloseable {
+        private final Proxy proxy;
+        private boolean closed;
+
+        private Lease(Proxy proxy) {
+            this.proxy = proxy;
+        }
+
+        public String getPath() {
+            return proxy.path;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                proxy.unpin();
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.config.VolcengineConfig;
+import com.example.dosh.model.dto.video.VideoClipDTO;
+import com.example.dosh.service.oss.MinioService;
+import com.example.dosh.util.LruCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Remembers analysis results across runs, keyed by a SHA-256 of the video content plus
+ * the normalized prompt, the model and the analysis settings. Results live on local disk
+ * or in our MinIO bucket and expire by age; the oldest are dropped past a max count.
+ */
+@Slf4j
+@Component
+public class AnalysisResultCache {
+
+    private static final String STORE_LOCAL = "local";
+    private static final String STORE_MINIO = "minio";
+    // Trimming the store means listing it, so only do it every so many writes
+    private static final int EVICTION_INTERVAL = 50;
+
+    private final VideoProcessingConfig config;
+    private final VolcengineConfig volcengineConfig;
+    private final MinioService minioService;
+    private final ObjectMapper mapper;
+    private final LruCache<String, String> contentHashes;
+    private final AtomicInteger writes = new AtomicInteger();
+
+    public AnalysisResultCache(VideoProcessingConfig config, VolcengineConfig volcengineConfig,
+                               MinioService minioService, ObjectMapper mapper) {
+        this.config = config;
+        this.volcengineConfig = volcengineConfig;
+        this.minioService = minioService;
+        this.mapper = mapper;
+        this.contentHashes = new LruCache<>(config.getMetadataCacheSize());
+    }
+
+    public boolean isEnabled() {
+        return STORE_LOCAL.equalsIgnoreCase(config.getAnalysisCacheStore())
+                || STORE_MINIO.equalsIgnoreCase(config.getAnalysisCacheStore());
+    }
+
+    /**
+     * @param mediaPath local file holding the video
+     * @return the cache key, or null when the content is not on local disk to hash
+     */
+    public String cacheKey(String mediaPath, String prompt) {
+        if (mediaPath.startsWith("http://") || mediaPath.startsWith("https://")) {
+            return null;
+        }
+        try {
+            String material = String.join("\n",
+                    contentHash(new File(mediaPath)),
+                    normalizePrompt(prompt),
+                    String.valueOf(volcengineConfig.getModel()),
+                    // Proxy and window settings change what the model sees
+                    config.isAnalysisProxy() ? "proxy:" + config.getAnalysisProxyHeight() : "original",
+                    "segments:" + config.getAnalysisSegmentSeconds() + "/" + config.getAnalysisSegmentOverlapSeconds());
+            return sha256(material.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("Could not hash {} for the analysis cache: {}", mediaPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the stored clips, or null on a miss
+     */
+    public List<VideoClipDTO> get(String key) {
+        try {
+            byte[] content = read(key);
+            if (content == null) {
+                return null;
+            }
+            StoredResult stored = mapper.readValue(content, StoredResult.class);
+            if (isExpired(stored.getCreatedAt())) {
+                delete(key);
+                return null;
+            }
+            return stored.getClips();
+        } catch (Exception e) {
+            log.warn("Analysis cache read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, List<VideoClipDTO> clips) {
+        try {
+            byte[] content = mapper.writeValueAsBytes(new StoredResult(System.currentTimeMillis(), volcengineConfig.getModel(), clips));
+            write(key, content);
+            if (writes.incrementAndGet() % EVICTION_INTERVAL == 0) {
+                evict();
+            }
+        } catch (Exception e) {
+            log.warn("Analysis cache write failed for {}: {}", key, e.getMessage());
+        }
+    }
+
+    static String normalizePrompt(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        return prompt.trim()
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .replaceAll("\\p{P}+$", "");
+    }
+
+    private String contentHash(File file) throws Exception {
+        String fileKey = file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+        String hash = contentHashes.get(fileKey);
+        if (hash == null) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+            contentHashes.put(fileKey, hash);
+        }
+        return hash;
+    }
+
+    private String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private boolean isExpired(long createdAt) {
+        return System.currentTimeMillis() - createdAt > TimeUnit.HOURS.toMillis(config.getAnalysisCacheTtlHours());
+    }
+
+    private boolean isMinio() {
+        return STORE_MINIO.equalsIgnoreCase(config.getAnalysisCacheStore());
+    }
+
+    private Path localPath(String key) {
+        return Paths.get(config.getAnalysisCacheDir(), key + ".json");
+    }
+
+    private String objectName(String key) {
+        return config.getAnalysisCachePrefix() + key + ".json";
+    }
+
+    private byte[] read(String key) throws Exception {
+        if (isMinio()) {
+            return minioService.getBytes(objectName(key));
+        }
+        Path path = localPath(key);
+        return Files.exists(path) ? Files.readAllBytes(path) : null;
+    }
+
+    private void write(String key, byte[] content) throws Exception {
+        if (isMinio()) {
+            minioService.putBytes(objectName(key), content, "application/json");
+            return;
+        }
+        Path path = localPath(key);
+        Files.createDirectories(path.getParent());
+        Path partial = Paths.get(path + ".part");
+        Files.write(partial, content);
+        Files.move(partial, path, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void delete(String key) throws Exception {
+        if (isMinio()) {
+            minioService.deleteFile(objectName(key));
+        } else {
+            Files.deleteIfExists(localPath(key));
+        }
+    }
+
+    // Drop expired entries, then the oldest ones beyond the max count
+    private void evict() throws Exception {
+        Map<String, Long> entries = new HashMap<>();
+        if (isMinio()) {
+            minioService.listObjects(config.getAnalysisCachePrefix()).forEach((name, modified) -> entries.put(
+                    name.substring(config.getAnalysisCachePrefix().length()).replace(".json", ""), modified));
+        } else {
+            Path dir = Paths.get(config.getAnalysisCacheDir());
+            if (!Files.isDirectory(dir)) {
+                return;
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(f -> f.getFileName().toString().endsWith(".json")).forEach(f -> entries.put(
+                        f.getFileName().toString().replace(".json", ""), f.toFile().lastModified()));
+            } catch (IOException e) {
+                log.warn("Could not list analysis cache: {}", e.getMessage());
+                return;
+            }
+        }
+
+        List<Map.Entry<String, Long>> byAge = new ArrayList<>(entries.entrySet());
+        byAge.sort(Map.Entry.comparingByValue());
+        int excess = byAge.size() - config.getAnalysisCacheMaxEntries();
+        int removed = 0;
+        for (Map.Entry<String, Long> entry : byAge) {
+            if (removed >= excess && !isExpired(entry.getValue())) {
+                break;
+            }
+            delete(entry.getKey());
+            removed++;
+        }
+        if (removed > 0) {
+            log.info("Analysis cache: dropped {} of {} entries", removed, byAge.size());
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StoredResult {
+        private long createdAt;
+        private String model;
+        private List<VideoClipDTO> clips;
+    }
+}
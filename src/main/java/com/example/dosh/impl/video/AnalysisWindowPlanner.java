@@ -0,0 +1,110 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.model.dto.video.VideoClipDTO;
+import com.example.dosh.util.FFmpegUtils;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits long sources into overlapping analysis windows and folds the clips found in
+ * each window back onto the source timeline.
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalysisWindowPlanner {
+
+    private final VideoProcessingConfig config;
+    private final FFmpegUtils ffmpegUtils;
+
+    /**
+     * @return the windows to analyse, or a single window covering the whole source when
+     * segmenting is off or the source is short enough
+     */
+    public List<Window> plan(double duration) {
+        double length = config.getAnalysisSegmentSeconds();
+        double overlap = Math.max(0, Math.min(config.getAnalysisSegmentOverlapSeconds(), length / 2));
+        List<Window> windows = new ArrayList<>();
+        if (length <= 0 || duration <= length + overlap) {
+            windows.add(new Window(0, duration));
+            return windows;
+        }
+
+        double start = 0;
+        // A tail shorter than the overlap is folded into the last window instead of analysed alone
+        while (start + length + overlap < duration) {
+            windows.add(new Window(start, length));
+            start += length - overlap;
+        }
+        windows.add(new Window(start, duration - start));
+        return windows;
+    }
+
+    /**
+     * Shift each window's clips by the window start and merge clips that overlap, which is
+     * how the same event shows up when it falls in the overlap of two windows.
+     *
+     * @param clipsPerWindow clips in window-relative time, one list per window in order
+     */
+    public List<VideoClipDTO> merge(List<Window> windows, List<List<VideoClipDTO>> clipsPerWindow) {
+        List<Range> ranges = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            Window window = windows.get(i);
+            for (VideoClipDTO clip : clipsPerWindow.get(i)) {
+                double start = ffmpegUtils.timeStrToSeconds(clip.getStartTime());
+                double end = Math.min(ffmpegUtils.timeStrToSeconds(clip.getEndTime()), window.getDuration());
+                if (end > start) {
+                    ranges.add(new Range(window.getStart() + start, window.getStart() + end, clip.getEvent()));
+                }
+            }
+        }
+        ranges.sort(Comparator.comparingDouble(Range::getStart));
+
+        List<VideoClipDTO> merged = new ArrayList<>();
+        Range current = null;
+        for (Range range : ranges) {
+            if (current != null && range.getStart() <= current.getEnd()) {
+                // Keep the description of the longer detection
+                if (range.getEnd() - range.getStart() > current.getEnd() - current.getStart()) {
+                    current.setEvent(range.getEvent());
+                }
+                current.setEnd(Math.max(current.getEnd(), range.getEnd()));
+                continue;
+            }
+            if (current != null) {
+                merged.add(toClip(current));
+            }
+            current = range;
+        }
+        if (current != null) {
+            merged.add(toClip(current));
+        }
+        return merged;
+    }
+
+    private VideoClipDTO toClip(Range range) {
+        return new VideoClipDTO(ffmpegUtils.formatTime(range.getStart()), ffmpegUtils.formatTime(range.getEnd()),
+                range.getEvent(), range.getEnd() - range.getStart());
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class Range {
+        private double start;
+        private double end;
+        private String event;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Window {
+        private double start;
+        private double duration;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.dosh.impl.video;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A directory owned by one on-disk cache. The cache claims it with a marker file and only
+ * ever deletes files carrying its own name prefix, so pointing a cache at /tmp or the
+ * project root by mistake fails startup instead of wiping it.
+ */
+@Slf4j
+final class CacheDirectory {
+
+    static final String MARKER = ".dosh-cache";
+
+    private CacheDirectory() {
+    }
+
+    /**
+     * Create or take over {@code dir} for the cache called {@code owner}, and delete the files
+     * a previous run left in it.
+     *
+     * @throws IllegalStateException if the directory holds anything but this cache's files
+     */
+    static void claim(Path dir, String owner, String filePrefix) throws IOException {
+        Files.createDirectories(dir);
+        Path marker = dir.resolve(MARKER);
+        if (Files.exists(marker)) {
+            String claimedBy = Files.readString(marker, StandardCharsets.UTF_8).trim();
+            if (!owner.equals(claimedBy)) {
+                throw new IllegalStateException("Cache dir " + dir + " belongs to the " + claimedBy + " cache, not " + owner);
+            }
+        } else {
+            try (Stream<Path> files = Files.list(dir)) {
+                if (files.findAny().isPresent()) {
+                    throw new IllegalStateException("Cache dir " + dir + " is not empty and was not created by the "
+                            + owner + " cache; point it at an empty or new directory");
+                }
+            }
+            Files.writeString(marker, owner, StandardCharsets.UTF_8);
+        }
+
+        // Entries are only known in memory, so whatever a previous run left is orphaned
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(f -> f.getFileName().toString().startsWith(filePrefix) && Files.isRegularFile(f))
+                    .forEach(f -> {
+                        try {
+                            Files.deleteIfExists(f);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete stale cache file {}", f);
+                        }
+                    });
+        }
+    }
+}
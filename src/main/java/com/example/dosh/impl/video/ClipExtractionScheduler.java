@@ -0,0 +1,136 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.util.FFmpegUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs ffmpeg clip extractions on a bounded, node-wide pool so that the number of
+ * concurrent ffmpeg processes stays capped no matter how many jobs are in flight.
+ */
+@Slf4j
+@Component
+public class ClipExtractionScheduler {
+
+    private final FFmpegUtils ffmpegUtils;
+    private final ThreadPoolExecutor executor;
+    private final int threadsPerProcess;
+
+    public ClipExtractionScheduler(FFmpegUtils ffmpegUtils, VideoProcessingConfig config) {
+        this.ffmpegUtils = ffmpegUtils;
+        int concurrency = config.resolveExtractionConcurrency();
+        this.threadsPerProcess = Math.max(1, Runtime.getRuntime().availableProcessors() / concurrency);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "clip-extract-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        log.info("Clip extraction pool started: {} processes x {} threads", concurrency, threadsPerProcess);
+    }
+
+    /**
+     * Start a batch for one job. Segments can be added to the batch as soon as they are
+     * known; a failure anywhere in the batch cancels everything else in it.
+     */
+    public ExtractionBatch newBatch() {
+        return new ExtractionBatch();
+    }
+
+    private String extract(ClipSegment segment) throws IOException, InterruptedException {
+        if (segment.isStreamCopy()) {
+            // The plan already starts this segment on a keyframe, so the copy is as long as planned
+            ffmpegUtils.copyClip(segment.getSourceUrl(), segment.getStart(), segment.getDuration(), segment.getOutputPath());
+            segment.setStreamCopied(true);
+            return segment.getOutputPath();
+        }
+        ffmpegUtils.extractClip(segment.getSourceUrl(), segment.getStart(), segment.getDuration(),
+                segment.getOutputPath(), threadsPerProcess, segment.getConformTo());
+        return segment.getOutputPath();
+    }
+
+    public class ExtractionBatch {
+        private final List<ClipSegment> segments = new ArrayList<>();
+        private final List<Future<?>> tasks = new ArrayList<>();
+        private final List<CompletableFuture<String>> results = new ArrayList<>();
+        private boolean cancelled;
+
+        public CompletableFuture<List<String>> submit(List<ClipSegment> clips) {
+            return submit(clips, null);
+        }
+
+        /**
+         * @param onClipDone called from the pool thread after each clip is written, may be null
+         * @return output paths in the same order as {@code clips}
+         */
+        public synchronized CompletableFuture<List<String>> submit(List<ClipSegment> clips, Consumer<ClipSegment> onClipDone) {
+            if (cancelled) {
+                return CompletableFuture.failedFuture(new CancellationException("Extraction batch cancelled"));
+            }
+
+            List<CompletableFuture<String>> clipResults = new ArrayList<>(clips.size());
+            for (ClipSegment segment : clips) {
+                CompletableFuture<String> result = new CompletableFuture<>();
+                tasks.add(executor.submit(() -> {
+                    try {
+                        result.complete(extract(segment));
+                        if (onClipDone != null) {
+                            onClipDone.accept(segment);
+                        }
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                        cancel();
+                    }
+                }));
+                segments.add(segment);
+                results.add(result);
+                clipResults.add(result);
+            }
+
+            return CompletableFuture.allOf(clipResults.toArray(new CompletableFuture[0]))
+                    .thenApply(v -> clipResults.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+        }
+
+        /**
+         * Stop every extraction in this batch and delete whatever was written.
+         */
+        public synchronized void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+            for (CompletableFuture<String> result : results) {
+                result.completeExceptionally(new CancellationException("Extraction batch cancelled"));
+            }
+            for (ClipSegment segment : segments) {
+                try {
+                    Files.deleteIfExists(Paths.get(segment.getOutputPath()));
+                } catch (IOException e) {
+                    log.warn("Failed to delete partial clip {}", segment.getOutputPath());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.model.dto.video.VideoMetadata;
+import lombok.Data;
+
+/**
+ * One cut to be extracted from a source video.
+ */
+@Data
+public class ClipSegment {
+    private String sourceUrl;
+    private double start;
+    private double duration;
+    private String outputPath;
+
+    // Cut with -c copy; start must then be a keyframe of the source
+    private boolean streamCopy;
+    // When re-encoding, match these stream parameters (null = legacy libx264/aac 30fps)
+    private VideoMetadata conformTo;
+    // Set by the scheduler once the clip was actually cut with -c copy
+    private volatile boolean streamCopied;
+
+    public ClipSegment(String sourceUrl, double start, double duration, String outputPath) {
+        this.sourceUrl = sourceUrl;
+        this.start = start;
+        this.duration = duration;
+        this.outputPath = outputPath;
+    }
+}
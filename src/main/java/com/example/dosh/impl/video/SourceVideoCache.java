@@ -0,0 +1,260 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.service.oss.MinioService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-local disk cache of source videos from our bucket, keyed by object name + ETag.
+ * A job leases its sources for as long as it runs, so ffmpeg and the analysis read one
+ * local copy instead of reopening the presigned URL for every clip. Leased files are
+ * never evicted; the rest go least recently used first once over the size budget.
+ */
+@Slf4j
+@Component
+public class SourceVideoCache {
+
+    private static final String FILE_PREFIX = "source_";
+
+    private final MinioService minioService;
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final ExecutorService fetchPool;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    public SourceVideoCache(MinioService minioService, VideoProcessingConfig config) {
+        this.minioService = minioService;
+        this.cacheDir = Paths.get(config.getSourceCacheDir()).toAbsolutePath();
+        this.maxBytes = config.getSourceCacheMaxSize().toBytes();
+
+        if (maxBytes > 0) {
+            try {
+                CacheDirectory.claim(cacheDir, "source", FILE_PREFIX);
+            } catch (IOException e) {
+                log.warn("Could not reset source cache dir {}: {}", cacheDir, e.getMessage());
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        this.fetchPool = Executors.newFixedThreadPool(Math.max(1, config.getSourceFetchConcurrency()), r -> {
+            Thread t = new Thread(r, "source-fetch-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Lease local copies of every source that lives in our bucket, downloading missing ones
+     * concurrently. Sources that are not ours, or that fail to download, are left out and
+     * should be read from their URL.
+     */
+    public Map<String, Lease> acquire(Collection<String> videoUrls) {
+        Map<String, CompletableFuture<Lease>> pending = new LinkedHashMap<>();
+        if (maxBytes > 0) {
+            for (String url : videoUrls) {
+                pending.computeIfAbsent(url, u -> CompletableFuture.supplyAsync(() -> acquire(u), fetchPool));
+            }
+        }
+
+        Map<String, Lease> leases = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Lease>> entry : pending.entrySet()) {
+            try {
+                Lease lease = entry.getValue().get();
+                if (lease != null) {
+                    leases.put(entry.getKey(), lease);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.warn("Could not cache {}, reading it remotely: {}", entry.getKey(), e.getCause().getMessage());
+            }
+        }
+        return leases;
+    }
+
+    /**
+     * Adopt a local file that already holds the bytes of {@code objectName}, e.g. the tee of
+     * a streamed upload, so the first job on it does not download it again.
+     */
+    public void register(String objectName, Path file) {
+        if (maxBytes <= 0) {
+            return;
+        }
+        try {
+            String key = cacheKey(objectName);
+            Path target = cacheDir.resolve(fileName(key, objectName));
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (lock) {
+                insert(key, target, 0);
+            }
+        } catch (Exception e) {
+            log.warn("Could not register {} in source cache: {}", objectName, e.getMessage());
+        }
+    }
+
+    private Lease acquire(String videoUrl) {
+        String objectName = minioService.objectNameFromUrl(videoUrl);
+        if (objectName == null) {
+            return null;
+        }
+        try {
+            String key = cacheKey(objectName);
+            while (true) {
+                synchronized (lock) {
+                    Entry entry = entries.get(key);
+                    if (entry != null) {
+                        entry.pins++;
+                        return new Lease(key, entry.file.toString());
+                    }
+                }
+
+                CompletableFuture<Void> fetch = new CompletableFuture<>();
+                CompletableFuture<Void> existing = inFlight.putIfAbsent(key, fetch);
+                if (existing != null) {
+                    // Someone else is downloading it; take a lease once it lands
+                    existing.get();
+                    continue;
+                }
+                try {
+                    Path target = cacheDir.resolve(fileName(key, objectName));
+                    Path partial = Paths.get(target + ".part");
+                    long start = System.currentTimeMillis();
+                    minioService.downloadObject(objectName, partial);
+                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                    log.info("Cached source {} ({} MB) in {} ms", objectName,
+                            Files.size(target) / (1024 * 1024), System.currentTimeMillis() - start);
+                    synchronized (lock) {
+                        Entry entry = insert(key, target, 1);
+                        fetch.complete(null);
+                        return new Lease(key, entry.file.toString());
+                    }
+                } catch (Exception e) {
+                    fetch.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(key, fetch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while caching " + objectName);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    // Callers hold the lock
+    private Entry insert(String key, Path file, int pins) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            totalBytes -= old.size;
+            pins += old.pins;
+        }
+        Entry entry = new Entry(file, file.toFile().length(), pins);
+        entries.put(key, entry);
+        totalBytes += entry.size;
+        evict();
+        return entry;
+    }
+
+    // Callers hold the lock
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.pins > 0) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= entry.size;
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                log.warn("Failed to delete cached source {}", entry.file);
+            }
+        }
+    }
+
+    private void release(String key) {
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.pins > 0) {
+                entry.pins--;
+            }
+            evict();
+        }
+    }
+
+    private String cacheKey(String objectName) throws Exception {
+        return objectName + ":" + minioService.getObjectETag(objectName);
+    }
+
+    private String fileName(String key, String objectName) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        String extension = objectName.contains(".") ? objectName.substring(objectName.lastIndexOf(".")) : "";
+        return FILE_PREFIX + HexFormat.of().formatHex(digest, 0, 16) + extension;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchPool.shutdownNow();
+    }
+
+    private static class Entry {
+        private final Path file;
+        private final long size;
+        private int pins;
+
+        Entry(Path file, long size, int pins) {
+            this.file = file;
+            this.size = size;
+            this.pins = pins;
+        }
+    }
+
+    /**
+     * A local copy that stays on disk until the lease is closed.
+     */
+    public class Lease implements AutoCloseable {
+        private final String key;
+        private final String path;
+        private boolean closed;
+
+        private Lease(String key, String path) {
+            this.key = key;
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Solves the trim budget toward a target duration before anything is extracted,
+ * so each source segment is cut exactly once at its final length.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrimPlanner {
+
+    static final double MIN_CLIP_DURATION = 0.5;
+    // A copy cut may start this far before the clip to land on a keyframe; further means re-encode
+    static final double MAX_KEYFRAME_LEAD = 1.0;
+    private static final double EPSILON = 0.001;
+
+    private final VideoProcessingConfig config;
+
+    /**
+     * @return a Random seeded from {@code video.processing.trim-seed}, or an unseeded one if not set
+     */
+    public Random newRandom() {
+        Long seed = config.getTrimSeed();
+        return seed != null ? new Random(seed) : new Random();
+    }
+
+    public List<Trim> plan(List<Double> durations, double targetDuration) {
+        return plan(durations, targetDuration, newRandom());
+    }
+
+    /**
+     * Spread the cut needed to reach {@code targetDuration} proportionally over all clips,
+     * dropping a random amount from the start of each.
+     *
+     * @return one trim per clip, in order; clips are left whole if they already fit
+     */
+    public List<Trim> plan(List<Double> durations, double targetDuration, Random rand) {
+        double totalDuration = 0;
+        for (double d : durations) {
+            totalDuration += d;
+        }
+
+        List<Trim> trims = new ArrayList<>(durations.size());
+        if (totalDuration <= targetDuration) {
+            for (double d : durations) {
+                trims.add(new Trim(0.0, d));
+            }
+            return trims;
+        }
+
+        double trimRatio = (totalDuration - targetDuration) / totalDuration;
+        for (double originalDur : durations) {
+            double trimAmount = originalDur * trimRatio;
+
+            // Random trim from start
+            double trimStart = rand.nextDouble() * trimAmount;
+
+            double newDuration = originalDur - trimAmount;
+            if (newDuration < MIN_CLIP_DURATION) {
+                newDuration = Math.min(MIN_CLIP_DURATION, originalDur);
+                trimStart = 0;
+            }
+            trims.add(new Trim(trimStart, newDuration));
+        }
+        return trims;
+    }
+
+    /**
+     * Move a trim onto the keyframe a -c copy cut would really start from. The length is kept,
+     * so a keyframe-aligned plan still adds up to the target: the cut slides back to the
+     * keyframe rather than growing by the distance to it.
+     *
+     * @param keyframe last source keyframe at or before the trimmed start, in seconds relative
+     *                 to the clip start (negative if it lies before the clip); null if unknown
+     * @return the trim as a copy cut will write it, or null if the clip has to be re-encoded
+     */
+    public Trim alignToKeyframe(Trim trim, Double keyframe) {
+        if (keyframe == null || keyframe < -MAX_KEYFRAME_LEAD || keyframe > trim.getOffset() + EPSILON) {
+            return null;
+        }
+        return new Trim(Math.min(keyframe, trim.getOffset()), trim.getDuration());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Trim {
+        private double offset; // seconds dropped from the start of the clip
+        private double duration;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.integration.volcengine.VolcengineClient;
+import com.example.dosh.model.dto.video.VideoClipDTO;
+import com.example.dosh.model.dto.video.VideoMetadata;
+import com.example.dosh.service.video.VideoMetadataService;
+import com.example.dosh.util.FFmpegUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans AI analysis requests out on a bounded pool so multi-video jobs wait for the
+ * slowest video instead of the sum of all of them. Long sources are further split into
+ * windows that are analysed side by side (see {@link AnalysisWindowPlanner}).
+ */
+@Slf4j
+@Component
+public class VideoAnalysisDispatcher {
+
+    private final VolcengineClient volcengineClient;
+    private final AnalysisProxyCache proxyCache;
+    private final AnalysisWindowPlanner windowPlanner;
+    private final AnalysisResultCache resultCache;
+    private final VideoMetadataService metadataService;
+    private final FFmpegUtils ffmpegUtils;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    public VideoAnalysisDispatcher(VolcengineClient volcengineClient, AnalysisProxyCache proxyCache,
+                                   AnalysisWindowPlanner windowPlanner, AnalysisResultCache resultCache,
+                                   VideoMetadataService metadataService,
+                                   FFmpegUtils ffmpegUtils, VideoProcessingConfig config) {
+        this.volcengineClient = volcengineClient;
+        this.proxyCache = proxyCache;
+        this.windowPlanner = windowPlanner;
+        this.resultCache = resultCache;
+        this.metadataService = metadataService;
+        this.ffmpegUtils = ffmpegUtils;
+        this.timeout = Duration.ofSeconds(config.getAnalysisTimeoutSeconds());
+
+        int concurrency = Math.max(1, config.getAnalysisConcurrency());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "video-analysis-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public CompletableFuture<List<VideoClipDTO>> analyze(String videoUrl, String prompt) {
+        return analyze(videoUrl, null, prompt);
+    }
+
+    /**
+     * @param localCopy local file with the same content, sent instead of downloading the URL
+     *                  again when the URL is not reachable from the cloud anyway; may be null
+     */
+    public CompletableFuture<List<VideoClipDTO>> analyze(String videoUrl, String localCopy, String prompt) {
+        String mediaPath = localCopy != null ? localCopy : videoUrl;
+        return CompletableFuture.supplyAsync(() -> resultCache.isEnabled() ? resultCache.cacheKey(mediaPath, prompt) : null, executor)
+                .thenCompose(key -> {
+                    List<VideoClipDTO> cached = key != null ? resultCache.get(key) : null;
+                    if (cached != null) {
+                        log.info("Analysis cache hit for {}", videoUrl);
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    AtomicBoolean incomplete = new AtomicBoolean();
+                    return runAnalysis(videoUrl, localCopy, prompt, incomplete).thenApply(clips -> {
+                        // Results missing a failed window would be replayed forever, so skip those
+                        if (key != null && !incomplete.get()) {
+                            resultCache.put(key, clips);
+                        }
+                        return clips;
+                    });
+                });
+    }
+
+    private CompletableFuture<List<VideoClipDTO>> runAnalysis(String videoUrl, String localCopy, String prompt, AtomicBoolean incomplete) {
+        return CompletableFuture.supplyAsync(() -> proxyCache.isEnabled()
+                ? proxyCache.getProxy(localCopy != null ? localCopy : videoUrl) : null, executor).thenCompose(proxy -> {
+            String input = proxy != null ? proxy.getPath()
+                    : localCopy != null && volcengineClient.isPrivateUrl(videoUrl) ? localCopy : videoUrl;
+            CompletableFuture<List<VideoClipDTO>> analysis;
+            try {
+                VideoMetadata meta = metadataService.getMetadata(input);
+                List<AnalysisWindowPlanner.Window> windows = windowPlanner.plan(meta != null ? meta.getDuration() : 0);
+                analysis = windows.size() <= 1
+                        ? CompletableFuture.supplyAsync(() -> volcengineClient.analyzeVideo(input, prompt, timeout), executor)
+                        : analyzeWindows(input, windows, prompt, incomplete);
+            } catch (RuntimeException e) {
+                analysis = CompletableFuture.failedFuture(e);
+            }
+            // The proxy must not be evicted while it is still being cut or uploaded
+            return proxy != null ? analysis.whenComplete((clips, e) -> proxy.close()) : analysis;
+        });
+    }
+
+    // Window tasks go onto the same pool without anything blocking on them there
+    private CompletableFuture<List<VideoClipDTO>> analyzeWindows(String input, List<AnalysisWindowPlanner.Window> windows,
+                                                                 String prompt, AtomicBoolean incomplete) {
+        log.info("Analysing {} in {} windows", input, windows.size());
+        List<CompletableFuture<List<VideoClipDTO>>> results = new ArrayList<>();
+        for (AnalysisWindowPlanner.Window window : windows) {
+            results.add(CompletableFuture.supplyAsync(() -> analyzeWindow(input, window, prompt), executor)
+                    .exceptionally(e -> {
+                        // One bad window should not throw away what the others found
+                        log.error("Analysis failed for window {}s+{}s of {}", window.getStart(), window.getDuration(), input, e);
+                        incomplete.set(true);
+                        return Collections.emptyList();
+                    }));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    List<List<VideoClipDTO>> clipsPerWindow = new ArrayList<>();
+                    for (CompletableFuture<List<VideoClipDTO>> result : results) {
+                        clipsPerWindow.add(result.join());
+                    }
+                    return windowPlanner.merge(windows, clipsPerWindow);
+                });
+    }
+
+    private List<VideoClipDTO> analyzeWindow(String input, AnalysisWindowPlanner.Window window, String prompt) {
+        String windowPath = Paths.get("clips", "window_" + UUID.randomUUID() + ".mp4").toString();
+        try {
+            cutWindow(input, window, windowPath);
+            return volcengineClient.analyzeVideo(windowPath, prompt, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Window analysis interrupted");
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Failed to cut analysis window: " + e.getMessage());
+        } finally {
+            new File(windowPath).delete();
+        }
+    }
+
+    private void cutWindow(String input, AnalysisWindowPlanner.Window window, String windowPath) throws java.io.IOException, InterruptedException {
+        Double keyframe = metadataService.findKeyframeAtOrBefore(input, window.getStart());
+        if (keyframe != null) {
+            try {
+                // A copy cut starts on the keyframe, so that is where the window's clock starts
+                ffmpegUtils.copyClip(input, keyframe, window.getDuration() + window.getStart() - keyframe, windowPath);
+                window.setDuration(window.getDuration() + window.getStart() - keyframe);
+                window.setStart(keyframe);
+                return;
+            } catch (java.io.IOException e) {
+                // Dropping the window would leave that stretch of the source unanalysed
+                log.warn("Copy cut of window {}s+{}s of {} failed, re-encoding it: {}",
+                        window.getStart(), window.getDuration(), input, e.getMessage());
+            }
+        }
+        ffmpegUtils.extractClip(input, window.getStart(), window.getDuration(), windowPath);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.model.dto.video.VideoJobDTO;
+import com.example.dosh.service.oss.MinioService;
+import com.example.dosh.service.video.VideoJobService;
+import com.example.dosh.service.video.VideoProgressListener;
+import com.example.dosh.service.video.VideoService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs video generation in the background on a bounded pool. Callers get a job id back
+ * immediately and follow the job by polling or over SSE.
+ */
+@Slf4j
+@Service
+public class VideoJobServiceImpl implements VideoJobService {
+
+    private static final long PROGRESS_EVENT_INTERVAL_MS = 250;
+    private static final String UPLOAD_DIR = "uploads";
+
+    private final VideoService videoService;
+    private final MinioService minioService;
+    private final SourceVideoCache sourceCache;
+    private final ThreadPoolExecutor executor;
+    private final long retentionMillis;
+    private final Map<String, VideoJob> jobs = new ConcurrentHashMap<>();
+
+    public VideoJobServiceImpl(VideoService videoService, MinioService minioService, SourceVideoCache sourceCache,
+                               VideoProcessingConfig config) {
+        this.videoService = videoService;
+        this.minioService = minioService;
+        this.sourceCache = sourceCache;
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(config.getJobRetentionMinutes());
+
+        int concurrency = Math.max(1, config.getJobConcurrency());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getJobQueueCapacity())), r -> {
+                    Thread t = new Thread(r, "video-job-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @Override
+    public String submit(MultipartFile file, String prompt, double targetDuration) {
+        // The multipart temp file is gone once the request ends, so keep our own copy
+        Path localFile;
+        try {
+            String originalFilename = file.getOriginalFilename();
+            String extension = originalFilename != null && originalFilename.contains(".")
+                    ? originalFilename.substring(originalFilename.lastIndexOf(".")) : ".mp4";
+            localFile = Paths.get(UPLOAD_DIR, "job_" + UUID.randomUUID() + extension).toAbsolutePath();
+            Files.createDirectories(localFile.getParent());
+            file.transferTo(localFile.toFile());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to store upload: " + e.getMessage());
+        }
+
+        try {
+            return start(job -> {
+                job.onStage("upload_source");
+                String videoUrl;
+                try {
+                    String objectName = minioService.uploadLocalFile(localFile.toFile(), file.getContentType());
+                    videoUrl = minioService.getFileUrl(objectName, 60 * 24);
+                } finally {
+                    Files.deleteIfExists(localFile);
+                }
+                return videoService.generateVideoFromPaths(Collections.singletonList(videoUrl), prompt, targetDuration, job);
+            });
+        } catch (RejectedExecutionException e) {
+            localFile.toFile().delete();
+            throw e;
+        }
+    }
+
+    @Override
+    public String submitStream(InputStream body, String filename, String contentType, String prompt, double targetDuration) {
+        String extension = filename != null && filename.contains(".") ? filename.substring(filename.lastIndexOf(".")) : ".mp4";
+        Path localFile = Paths.get(UPLOAD_DIR, "job_" + UUID.randomUUID() + extension).toAbsolutePath();
+        String videoUrl;
+        try {
+            Files.createDirectories(localFile.getParent());
+            String objectName;
+            try (OutputStream tee = new BufferedOutputStream(Files.newOutputStream(localFile))) {
+                objectName = minioService.uploadStream(body, extension, contentType, tee);
+            }
+            // The tee becomes the cached copy, so the job never downloads what it just uploaded
+            sourceCache.register(objectName, localFile);
+            videoUrl = minioService.getFileUrl(objectName, 60 * 24);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to ingest upload: " + e.getMessage(), e);
+        } finally {
+            localFile.toFile().delete();
+        }
+
+        return submitFromPaths(Collections.singletonList(videoUrl), prompt, targetDuration);
+    }
+
+    @Override
+    public String submitFromPaths(List<String> videoUrls, String prompt, double targetDuration) {
+        return start(job -> videoService.generateVideoFromPaths(videoUrls, prompt, targetDuration, job));
+    }
+
+    @Override
+    public VideoJobDTO getJob(String jobId) {
+        VideoJob job = jobs.get(jobId);
+        return job != null ? job.snapshot() : null;
+    }
+
+    @Override
+    public SseEmitter subscribe(String jobId) {
+        VideoJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(0L);
+        job.addEmitter(emitter);
+        return emitter;
+    }
+
+    private String start(JobBody body) {
+        purgeExpired();
+        VideoJob job = new VideoJob(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> job.run(body));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            log.warn("Video job queue full ({} queued), rejecting job", executor.getQueue().size());
+            throw e;
+        }
+        log.info("Video job {} queued", job.id);
+        return job.id;
+    }
+
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.isFinishedBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface JobBody {
+        Map<String, Object> run(VideoJob job) throws Exception;
+    }
+
+    private static class VideoJob implements VideoProgressListener {
+        private final String id;
+        private final VideoJobDTO state = new VideoJobDTO();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private long stageStartedAt;
+        private long lastEventAt;
+
+        VideoJob(String id) {
+            this.id = id;
+            state.setJobId(id);
+            state.setStatus("queued");
+            state.setCreatedAt(System.currentTimeMillis());
+        }
+
+        void run(JobBody body) {
+            synchronized (this) {
+                state.setStatus("running");
+            }
+            try {
+                Map<String, Object> result = body.run(this);
+                synchronized (this) {
+                    closeStage();
+                    state.setResult(result);
+                    state.setPercent(100.0);
+                    state.setStatus("succeeded");
+                    state.setFinishedAt(System.currentTimeMillis());
+                }
+                log.info("Video job {} finished", id);
+            } catch (Exception e) {
+                log.error("Video job {} failed", id, e);
+                synchronized (this) {
+                    closeStage();
+                    state.setError(e.getMessage());
+                    state.setStatus("failed");
+                    state.setFinishedAt(System.currentTimeMillis());
+                }
+            }
+            publish("done", true);
+            // Whoever removes an emitter completes it; addEmitter may be racing us for late joiners
+            for (SseEmitter emitter : emitters) {
+                if (emitters.remove(emitter)) {
+                    emitter.complete();
+                }
+            }
+        }
+
+        @Override
+        public void onStage(String stage) {
+            synchronized (this) {
+                closeStage();
+                state.setStage(stage);
+                stageStartedAt = System.currentTimeMillis();
+            }
+            publish("progress", true);
+        }
+
+        @Override
+        public void onProgress(double percent) {
+            synchronized (this) {
+                // Parallel extractions can report slightly out of order
+                state.setPercent(Math.max(state.getPercent(), percent));
+            }
+            publish("progress", false);
+        }
+
+        private void closeStage() {
+            if (state.getStage() != null && stageStartedAt > 0) {
+                state.getStageTimings().merge(state.getStage(), System.currentTimeMillis() - stageStartedAt, Long::sum);
+                stageStartedAt = 0;
+            }
+        }
+
+        void addEmitter(SseEmitter emitter) {
+            emitters.add(emitter);
+            emitter.onCompletion(() -> emitters.remove(emitter));
+            emitter.onTimeout(() -> emitters.remove(emitter));
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(snapshot()));
+            } catch (Exception e) {
+                emitters.remove(emitter);
+                return;
+            }
+            // The job may have finished between the lookup and registration
+            if (isFinishedBefore(Long.MAX_VALUE) && emitters.remove(emitter)) {
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(snapshot()));
+                } catch (Exception ignored) {
+                }
+                emitter.complete();
+            }
+        }
+
+        private void publish(String event, boolean force) {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (!force && now - lastEventAt < PROGRESS_EVENT_INTERVAL_MS) {
+                    return;
+                }
+                lastEventAt = now;
+            }
+            if (emitters.isEmpty()) {
+                return;
+            }
+            VideoJobDTO snapshot = snapshot();
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name(event).data(snapshot));
+                } catch (Exception e) {
+                    emitters.remove(emitter);
+                }
+            }
+        }
+
+        synchronized boolean isFinishedBefore(long cutoff) {
+            return state.getFinishedAt() != null && state.getFinishedAt() < cutoff;
+        }
+
+        synchronized VideoJobDTO snapshot() {
+            VideoJobDTO copy = new VideoJobDTO();
+            copy.setJobId(state.getJobId());
+            copy.setStatus(state.getStatus());
+            copy.setStage(state.getStage());
+            copy.setPercent(state.getPercent());
+            copy.setStageTimings(new LinkedHashMap<>(state.getStageTimings()));
+            copy.setResult(state.getResult());
+            copy.setError(state.getError());
+            copy.setCreatedAt(state.getCreatedAt());
+            copy.setFinishedAt(state.getFinishedAt());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.model.dto.video.VideoMetadata;
+import com.example.dosh.service.oss.MinioService;
+import com.example.dosh.service.video.VideoMetadataService;
+import com.example.dosh.util.FFmpegUtils;
+import com.example.dosh.util.LruCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ffprobe front-end that remembers results. Local files are keyed by path + mtime + size,
+ * objects in our MinIO bucket by object name + ETag, so a changed file is probed again.
+ * <p>
+ * ffprobe only accepts one input per run, so a batch is probed as concurrent processes
+ * on a small pool; identical in-flight probes are shared.
+ */
+@Slf4j
+@Service
+public class VideoMetadataServiceImpl implements VideoMetadataService {
+
+    private final FFmpegUtils ffmpegUtils;
+    private final MinioService minioService;
+    private final LruCache<String, VideoMetadata> metadataCache;
+    private final LruCache<String, List<Double>> keyframeCache;
+    private final Map<String, CompletableFuture<VideoMetadata>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService probePool;
+
+    public VideoMetadataServiceImpl(FFmpegUtils ffmpegUtils, MinioService minioService, VideoProcessingConfig config) {
+        this.ffmpegUtils = ffmpegUtils;
+        this.minioService = minioService;
+        this.metadataCache = new LruCache<>(config.getMetadataCacheSize());
+        this.keyframeCache = new LruCache<>(config.getMetadataCacheSize());
+
+        AtomicInteger counter = new AtomicInteger();
+        this.probePool = Executors.newFixedThreadPool(Math.max(1, config.getProbeConcurrency()), r -> {
+            Thread t = new Thread(r, "ffprobe-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public VideoMetadata getMetadata(String videoPath) {
+        return getMetadata(Collections.singletonList(videoPath)).get(videoPath);
+    }
+
+    @Override
+    public Map<String, VideoMetadata> getMetadata(Collection<String> videoPaths) {
+        Map<String, CompletableFuture<VideoMetadata>> pending = new LinkedHashMap<>();
+        for (String path : videoPaths) {
+            if (pending.containsKey(path)) continue;
+
+            String key = cacheKey(path);
+            VideoMetadata cached = metadataCache.get(key);
+            if (cached != null) {
+                pending.put(path, CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            pending.put(path, probeShared(key, path));
+        }
+
+        Map<String, VideoMetadata> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<VideoMetadata>> entry : pending.entrySet()) {
+            try {
+                VideoMetadata meta = entry.getValue().get();
+                if (meta != null) {
+                    result.put(entry.getKey(), meta);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.warn("Probe failed for {}: {}", entry.getKey(), e.getCause().getMessage());
+            }
+        }
+        return result;
+    }
+
+    // Built outside the map: a probe that fails fast would otherwise finish, and remove
+    // itself from inFlight, while computeIfAbsent still holds the bin
+    private CompletableFuture<VideoMetadata> probeShared(String key, String path) {
+        CompletableFuture<VideoMetadata> probe = new CompletableFuture<>();
+        CompletableFuture<VideoMetadata> existing = inFlight.putIfAbsent(key, probe);
+        if (existing != null) {
+            return existing;
+        }
+        probe.whenComplete((meta, e) -> {
+            if (meta != null) {
+                metadataCache.put(key, meta);
+            }
+            inFlight.remove(key, probe);
+        });
+        try {
+            probePool.execute(() -> {
+                try {
+                    probe.complete(ffmpegUtils.probe(path));
+                } catch (Throwable t) {
+                    probe.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probe.completeExceptionally(e);
+        }
+        return probe;
+    }
+
+    @Override
+    public List<Double> getKeyframes(String videoPath) {
+        // A full keyframe scan reads the whole file; only worth it when it's on local disk
+        if (isRemote(videoPath)) {
+            return null;
+        }
+        String key = cacheKey(videoPath);
+        List<Double> keyframes = keyframeCache.get(key);
+        if (keyframes == null) {
+            keyframes = ffmpegUtils.listKeyframes(videoPath);
+            if (keyframes != null) {
+                keyframeCache.put(key, Collections.unmodifiableList(keyframes));
+            }
+        }
+        return keyframes;
+    }
+
+    @Override
+    public Double findKeyframeAtOrBefore(String videoPath, double time) {
+        List<Double> keyframes = getKeyframes(videoPath);
+        if (keyframes == null) {
+            return ffmpegUtils.findKeyframeAtOrBefore(videoPath, time);
+        }
+        int idx = Collections.binarySearch(keyframes, time + 0.001);
+        int insertion = idx >= 0 ? idx : -idx - 2;
+        return insertion >= 0 ? keyframes.get(insertion) : null;
+    }
+
+    private boolean isRemote(String videoPath) {
+        return videoPath.startsWith("http://") || videoPath.startsWith("https://");
+    }
+
+    private String cacheKey(String videoPath) {
+        if (isRemote(videoPath)) {
+            String objectName = minioService.objectNameFromUrl(videoPath);
+            if (objectName != null) {
+                try {
+                    return "minio:" + objectName + ":" + minioService.getObjectETag(objectName);
+                } catch (Exception e) {
+                    log.debug("Could not stat {}: {}", objectName, e.getMessage());
+                }
+            }
+            return "url:" + videoPath;
+        }
+        File file = new File(videoPath);
+        return "file:" + file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probePool.shutdownNow();
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.dosh.impl.video;
 
-import com.example.dosh.integration.volcengine.VolcengineClient;
+import com.example.dosh.config.VideoProcessingConfig;
 import com.example.dosh.model.dto.video.VideoClipDTO;
+import com.example.dosh.model.dto.video.VideoMetadata;
+import com.example.dosh.service.video.VideoMetadataService;
+import com.example.dosh.service.video.VideoProgressListener;
 import com.example.dosh.service.video.VideoService;
 import com.example.dosh.util.FFmpegUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -14,22 +17,44 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class VideoServiceImpl implements VideoService {
 
     private final FFmpegUtils ffmpegUtils;
-    private final VolcengineClient volcengineClient;
+    private final VideoAnalysisDispatcher analysisDispatcher;
     private final com.example.dosh.service.oss.MinioService minioService;
+    private final ClipExtractionScheduler extractionScheduler;
+    private final VideoProcessingConfig processingConfig;
+    private final VideoMetadataService metadataService;
+    private final TrimPlanner trimPlanner;
+    private final SourceVideoCache sourceCache;
     private final String UPLOAD_DIR = "uploads";
     private final String CLIPS_DIR = "clips";
     private final String OUTPUT_DIR = "outputs";
+    private static final String RENDER_MODE_FILTERGRAPH = "filtergraph";
+    // Share of overall progress reached at the end of each stage
+    private static final double PROGRESS_ANALYZED = 40.0;
+    private static final double PROGRESS_EXTRACTED = 80.0;
+    private static final double PROGRESS_MERGED = 95.0;
 
-    public VideoServiceImpl(FFmpegUtils ffmpegUtils, VolcengineClient volcengineClient, com.example.dosh.service.oss.MinioService minioService) {
+    public VideoServiceImpl(FFmpegUtils ffmpegUtils, VideoAnalysisDispatcher analysisDispatcher, com.example.dosh.service.oss.MinioService minioService,
+                            ClipExtractionScheduler extractionScheduler, VideoProcessingConfig processingConfig,
+                            VideoMetadataService metadataService, TrimPlanner trimPlanner, SourceVideoCache sourceCache) {
         this.ffmpegUtils = ffmpegUtils;
-        this.volcengineClient = volcengineClient;
+        this.analysisDispatcher = analysisDispatcher;
         this.minioService = minioService;
+        this.extractionScheduler = extractionScheduler;
+        this.processingConfig = processingConfig;
+        this.metadataService = metadataService;
+        this.trimPlanner = trimPlanner;
+        this.sourceCache = sourceCache;
         createDirs();
     }
 
@@ -44,7 +69,7 @@ public class VideoServiceImpl implements VideoService {
         try {
             // 1. Save Video to MinIO
             String videoUrl = uploadVideo(file);
-            return processVideos(Collections.singletonList(videoUrl), prompt, targetDuration);
+            return processVideos(Collections.singletonList(videoUrl), prompt, targetDuration, VideoProgressListener.NONE);
 
         } catch (Exception e) {
             log.error("Auto generation failed", e);
@@ -68,8 +93,13 @@ public class VideoServiceImpl implements VideoService {
 
     @Override
     public Map<String, Object> generateVideoFromPaths(List<String> videoUrls, String prompt, double targetDuration) {
+        return generateVideoFromPaths(videoUrls, prompt, targetDuration, VideoProgressListener.NONE);
+    }
+
+    @Override
+    public Map<String, Object> generateVideoFromPaths(List<String> videoUrls, String prompt, double targetDuration, VideoProgressListener listener) {
         try {
-            return processVideos(videoUrls, prompt, targetDuration);
+            return processVideos(videoUrls, prompt, targetDuration, listener);
         } catch (Exception e) {
             log.error("Video processing from paths failed", e);
             throw new RuntimeException("Processing failed: " + e.getMessage());
@@ -87,54 +117,96 @@ public class VideoServiceImpl implements VideoService {
         }
     }
 
-    private Map<String, Object> processVideos(List<String> videoUrls, String prompt, double targetDuration) throws IOException, InterruptedException {
-        List<String> allClipPaths = new ArrayList<>();
-        int totalClipsCount = 0;
+    private Map<String, Object> processVideos(List<String> videoUrls, String prompt, double targetDuration,
+                                              VideoProgressListener listener) throws IOException, InterruptedException {
+        // Pull sources from our bucket to local disk once; every probe and cut reads that copy
+        listener.onStage("fetch");
+        Map<String, SourceVideoCache.Lease> leases = sourceCache.acquire(videoUrls);
+        try {
+            Map<String, String> localCopies = new HashMap<>();
+            leases.forEach((url, lease) -> localCopies.put(url, lease.getPath()));
+            return processVideos(videoUrls, localCopies, prompt, targetDuration, listener);
+        } finally {
+            leases.values().forEach(SourceVideoCache.Lease::close);
+        }
+    }
+
+    /**
+     * @param localCopies local files holding the same bytes as some of the URLs; ffmpeg reads
+     *                    those instead of going back over the network
+     */
+    private Map<String, Object> processVideos(List<String> videoUrls, Map<String, String> localCopies, String prompt,
+                                              double targetDuration, VideoProgressListener listener) throws IOException, InterruptedException {
+        listener.onStage("probe");
+        Map<String, VideoMetadata> sourceMetadata = probeSources(videoUrls.stream()
+                .map(url -> localCopies.getOrDefault(url, url)).collect(Collectors.toList()));
+        VideoMetadata target = sourceMetadata.values().stream().findFirst().orElse(null);
 
+        // 2. Call AI Analysis (Now supports URL), all videos concurrently
+        listener.onStage("analyze");
+        AtomicInteger analysed = new AtomicInteger();
+        List<CompletableFuture<List<ClipSegment>>> plannedClips = new ArrayList<>();
         for (String videoUrl : videoUrls) {
-            // 2. Call AI Analysis (Now supports URL)
-            List<VideoClipDTO> clips;
-            try {
-                clips = volcengineClient.analyzeVideo(videoUrl, prompt);
-            } catch (Exception e) {
-                 log.error("Analysis failed for URL: {}", videoUrl, e);
-                 continue;
-            }
-            
-            if (clips.isEmpty()) {
-                log.warn("No clips found for video: {}", videoUrl);
-                continue;
-            }
-            totalClipsCount += clips.size();
-
-            // 3. Extract Clips
-            for (VideoClipDTO clip : clips) {
-                String clipName = "clip_" + UUID.randomUUID() + ".mp4";
-                Path clipPath = Paths.get(CLIPS_DIR, clipName);
-                
-                double start = ffmpegUtils.timeStrToSeconds(clip.getStartTime());
-                double end = ffmpegUtils.timeStrToSeconds(clip.getEndTime());
-                double duration = end - start;
-                
-                // Use URL directly for extraction
-                ffmpegUtils.extractClip(videoUrl, start, duration, clipPath.toString());
-                allClipPaths.add(clipPath.toString());
-            }
+            String mediaPath = localCopies.getOrDefault(videoUrl, videoUrl);
+            plannedClips.add(analysisDispatcher.analyze(videoUrl, localCopies.get(videoUrl), prompt)
+                    .exceptionally(e -> {
+                        log.error("Analysis failed for URL: {}", videoUrl, e);
+                        return Collections.emptyList();
+                    })
+                    .thenApply(clips -> {
+                        listener.onProgress(PROGRESS_ANALYZED * analysed.incrementAndGet() / videoUrls.size());
+                        if (clips.isEmpty()) {
+                            log.warn("No clips found for video: {}", videoUrl);
+                        }
+                        return toSegments(mediaPath, clips, sourceMetadata.get(mediaPath), target);
+                    }));
         }
 
-        if (allClipPaths.isEmpty()) {
+        // The trim budget depends on every clip, so wait for all analyses before cutting
+        List<ClipSegment> segments = joinInOrder(plannedClips, null);
+        if (segments.isEmpty()) {
             throw new RuntimeException("AI returned no clips for any video");
         }
+        int totalClipsCount = segments.size();
 
-        // 4. Smart Trim
-        List<String> finalClips = smartTrimClips(allClipPaths, targetDuration);
+        // 3. Smart Trim, solved up front so each segment is cut once at its final length
+        boolean filtergraph = RENDER_MODE_FILTERGRAPH.equalsIgnoreCase(processingConfig.getRenderMode());
+        applyTrimPlan(segments, targetDuration, !filtergraph);
 
-        // 5. Merge
         String outputFilename = "merged_" + UUID.randomUUID() + ".mp4";
         Path outputPath = Paths.get(OUTPUT_DIR, outputFilename);
-        ffmpegUtils.mergeClips(finalClips, outputPath.toString());
+        List<String> tempClipPaths = new ArrayList<>();
+
+        double outputDuration = segments.stream().mapToDouble(ClipSegment::getDuration).sum();
+
+        if (filtergraph) {
+            // 4-5. Cut and concat the source ranges in one ffmpeg pass, no intermediate clips
+            listener.onStage("render");
+            renderFiltergraph(segments, sourceMetadata, target, outputPath.toString(),
+                    progressBetween(listener, PROGRESS_ANALYZED, PROGRESS_MERGED, outputDuration));
+        } else {
+            // 4. Extract Clips in parallel; paths come back in segment order for the merge
+            listener.onStage("extract");
+            AtomicInteger extracted = new AtomicInteger();
+            ClipExtractionScheduler.ExtractionBatch batch = extractionScheduler.newBatch();
+            CompletableFuture<List<String>> extraction = batch.submit(segments, clip -> listener.onProgress(
+                    PROGRESS_ANALYZED + (PROGRESS_EXTRACTED - PROGRESS_ANALYZED) * extracted.incrementAndGet() / segments.size()));
+            List<String> clipPaths = joinInOrder(Collections.singletonList(extraction), batch::cancel);
+            tempClipPaths.addAll(clipPaths);
+
+            // 5. Merge
+            listener.onStage("merge");
+            // A re-encoded clip differs from the copied ones in extradata, profile and timebase
+            // even when conformed, and concat -c copy would keep only the first clip's, so any
+            // re-encoded clip means the merge re-encodes too
+            boolean streamCopyMerge = segments.stream().allMatch(ClipSegment::isStreamCopied);
+            ffmpegUtils.mergeClips(clipPaths, outputPath.toString(), streamCopyMerge,
+                    progressBetween(listener, PROGRESS_EXTRACTED, PROGRESS_MERGED, outputDuration));
+        }
 
         // 6. Upload Result to MinIO
+        listener.onStage("upload");
+        listener.onProgress(PROGRESS_MERGED);
         String finalOssUrl;
         try {
             File resultFile = outputPath.toFile();
@@ -145,11 +217,7 @@ public class VideoServiceImpl implements VideoService {
             // Cleanup local merged file
             Files.deleteIfExists(outputPath);
             // Cleanup clips
-            for (String clipPath : allClipPaths) { // Use allClipPaths to clean everything extracted
-                Files.deleteIfExists(Paths.get(clipPath));
-            }
-            // Also cleanup trimmed clips if any (they are in finalClips but might be different files if trimmed)
-             for (String clipPath : finalClips) {
+            for (String clipPath : tempClipPaths) {
                 Files.deleteIfExists(Paths.get(clipPath));
             }
             
@@ -168,72 +236,143 @@ public class VideoServiceImpl implements VideoService {
         return result;
     }
 
-    private List<VideoClipDTO> mockAiAnalysis(String videoPath, String prompt) {
-        log.info("Mock AI Analysis for: {}", videoPath);
-        double duration = ffmpegUtils.getVideoDuration(videoPath);
-        if (duration == 0) duration = 60.0; // Fallback
+    // Map ffmpeg's output position onto the [from, to] slice of overall progress
+    private DoubleConsumer progressBetween(VideoProgressListener listener, double from, double to, double totalSeconds) {
+        return seconds -> {
+            double fraction = totalSeconds > 0 ? Math.min(1.0, seconds / totalSeconds) : 0.0;
+            listener.onProgress(from + (to - from) * fraction);
+        };
+    }
 
-        int numClips = new Random().nextInt(3) + 1; // 1 to 3 clips
-        List<VideoClipDTO> clips = new ArrayList<>();
+    private <T> List<T> joinInOrder(List<CompletableFuture<List<T>>> futures, Runnable onFailure) throws IOException, InterruptedException {
+        List<T> joined = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                joined.addAll(future.get());
+            }
+            return joined;
+        } catch (ExecutionException e) {
+            if (onFailure != null) onFailure.run();
+            throw new IOException("Video processing failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            if (onFailure != null) onFailure.run();
+            throw e;
+        }
+    }
 
-        for (int i = 0; i < numClips; i++) {
-            double start = new Random().nextDouble() * Math.max(0, duration - 10);
-            double end = Math.min(start + 3 + new Random().nextDouble() * 5, duration); // 3 to 8 seconds
+    /**
+     * @param alignCopies move stream-copy cuts onto the keyframe they will really start from,
+     *                    so what ffmpeg writes is exactly what was planned
+     */
+    private void applyTrimPlan(List<ClipSegment> segments, double targetDuration, boolean alignCopies) {
+        List<Double> durations = new ArrayList<>();
+        for (ClipSegment segment : segments) {
+            durations.add(segment.getDuration());
+        }
+        List<TrimPlanner.Trim> trims = trimPlanner.plan(durations, targetDuration);
+        for (int i = 0; i < segments.size(); i++) {
+            ClipSegment segment = segments.get(i);
+            TrimPlanner.Trim trim = trims.get(i);
+            if (alignCopies && segment.isStreamCopy()) {
+                Double keyframe = metadataService.findKeyframeAtOrBefore(segment.getSourceUrl(), segment.getStart() + trim.getOffset());
+                TrimPlanner.Trim aligned = trimPlanner.alignToKeyframe(trim, keyframe != null ? keyframe - segment.getStart() : null);
+                if (aligned != null) {
+                    trim = aligned;
+                } else {
+                    log.info("No keyframe near {}s in {}, re-encoding clip", segment.getStart() + trim.getOffset(), segment.getSourceUrl());
+                    segment.setStreamCopy(false);
+                }
+            }
+            segment.setStart(segment.getStart() + trim.getOffset());
+            segment.setDuration(trim.getDuration());
+        }
+    }
 
-            String startTime = formatTime(start);
-            String endTime = formatTime(end);
-            
-            clips.add(new VideoClipDTO(startTime, endTime, "Mock Event " + (i + 1), end - start));
+    private void renderFiltergraph(List<ClipSegment> segments, Map<String, VideoMetadata> sourceMetadata,
+                                   VideoMetadata target, String outputPath, DoubleConsumer progress) throws IOException, InterruptedException {
+        List<FFmpegUtils.InputRange> ranges = new ArrayList<>();
+        for (ClipSegment segment : segments) {
+            VideoMetadata meta = sourceMetadata.get(segment.getSourceUrl());
+            // Unknown sources are assumed to carry audio
+            boolean hasAudio = meta == null || meta.getAudioCodec() != null;
+            ranges.add(new FFmpegUtils.InputRange(segment.getSourceUrl(), segment.getStart(), segment.getDuration(), hasAudio));
+        }
+        if (target != null && target.getWidth() > 0 && target.getHeight() > 0) {
+            ffmpegUtils.renderConcat(ranges, outputPath, target.getWidth(), target.getHeight(),
+                    target.getFps() > 0 ? target.getFps() : 30.0, progress);
+        } else {
+            ffmpegUtils.renderConcat(ranges, outputPath, 1280, 720, 30.0, progress);
         }
-        return clips;
     }
 
-    private String formatTime(double seconds) {
-        int m = (int) (seconds / 60);
-        int s = (int) (seconds % 60);
-        int ms = (int) ((seconds % 1) * 1000);
-        return String.format("%02d:%02d.%03d", m, s, ms);
+    /**
+     * Probe every source once so clip ends can be clamped to the real duration and clips
+     * planned as stream copies (or, for the filtergraph renderer, so sources without audio
+     * get silence). The first source that probes successfully sets the stream parameters
+     * for the whole job.
+     */
+    private Map<String, VideoMetadata> probeSources(List<String> videoUrls) {
+        Map<String, VideoMetadata> metadata = new LinkedHashMap<>();
+        metadataService.getMetadata(videoUrls).forEach((videoUrl, meta) -> {
+            if (meta.getVideoCodec() != null) {
+                metadata.put(videoUrl, meta);
+            }
+        });
+        return metadata;
     }
 
-    private List<String> smartTrimClips(List<String> clipPaths, double targetDuration) throws IOException, InterruptedException {
-        List<Double> durations = new ArrayList<>();
-        double totalDuration = 0;
-        for (String path : clipPaths) {
-            double d = ffmpegUtils.getVideoDuration(path);
-            durations.add(d);
-            totalDuration += d;
-        }
+    private List<ClipSegment> toSegments(String videoUrl, List<VideoClipDTO> clips, VideoMetadata source, VideoMetadata target) {
+        boolean streamCopy = processingConfig.isStreamCopy();
+        boolean copyable = streamCopy && source != null && source.isStreamCopyCompatible(target);
+        List<ClipSegment> segments = new ArrayList<>();
+        for (VideoClipDTO clip : clips) {
+            String clipName = "clip_" + UUID.randomUUID() + ".mp4";
+            Path clipPath = Paths.get(CLIPS_DIR, clipName);
+
+            double start = ffmpegUtils.timeStrToSeconds(clip.getStartTime());
+            double end = ffmpegUtils.timeStrToSeconds(clip.getEndTime());
+            if (source != null && source.getDuration() > 0) {
+                // The model sometimes reports an end past the end of the video
+                end = Math.min(end, source.getDuration());
+            }
+            double duration = end - start;
+            if (duration <= 0) {
+                log.warn("Skipping empty clip {}-{} of {}", clip.getStartTime(), clip.getEndTime(), videoUrl);
+                continue;
+            }
 
-        if (totalDuration <= targetDuration) {
-            return clipPaths;
+            // Use URL directly for extraction
+            ClipSegment segment = new ClipSegment(videoUrl, start, duration, clipPath.toString());
+            segment.setStreamCopy(copyable);
+            if (streamCopy && target != null && target.isStreamCopyable()) {
+                // Re-encoded clips (incompatible sources, or a copy cut with no keyframe to start
+                // on) match the copied ones in size and frame rate for the re-encoding merge
+                segment.setConformTo(target);
+            }
+            segments.add(segment);
         }
+        return segments;
+    }
 
-        double needTrim = totalDuration - targetDuration;
-        List<String> trimmedPaths = new ArrayList<>();
-        Random rand = new Random();
+    private List<VideoClipDTO> mockAiAnalysis(String videoPath, String prompt) {
+        log.info("Mock AI Analysis for: {}", videoPath);
+        VideoMetadata meta = metadataService.getMetadata(videoPath);
+        double duration = meta != null ? meta.getDuration() : 0.0;
+        if (duration == 0) duration = 60.0; // Fallback
 
-        for (int i = 0; i < clipPaths.size(); i++) {
-            String path = clipPaths.get(i);
-            double originalDur = durations.get(i);
-            double trimRatio = needTrim / totalDuration;
-            double trimAmount = originalDur * trimRatio;
+        Random rand = trimPlanner.newRandom();
+        int numClips = rand.nextInt(3) + 1; // 1 to 3 clips
+        List<VideoClipDTO> clips = new ArrayList<>();
 
-            // Random trim from start
-            double trimStart = rand.nextDouble() * trimAmount;
-            
-            double newDuration = originalDur - trimAmount;
-            if (newDuration < 0.5) {
-                newDuration = 0.5;
-                trimStart = 0;
-            }
+        for (int i = 0; i < numClips; i++) {
+            double start = rand.nextDouble() * Math.max(0, duration - 10);
+            double end = Math.min(start + 3 + rand.nextDouble() * 5, duration); // 3 to 8 seconds
 
-            String trimmedName = "trimmed_" + UUID.randomUUID() + ".mp4";
-            Path trimmedPath = Paths.get(CLIPS_DIR, trimmedName);
+            String startTime = ffmpegUtils.formatTime(start);
+            String endTime = ffmpegUtils.formatTime(end);
             
-            ffmpegUtils.extractClip(path, trimStart, newDuration, trimmedPath.toString());
-            trimmedPaths.add(trimmedPath.toString());
+            clips.add(new VideoClipDTO(startTime, endTime, "Mock Event " + (i + 1), end - start));
         }
-
-        return trimmedPaths;
+        return clips;
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.example.dosh.integration.chatglm;
 import com.example.dosh.config.ChatGLMConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import okhttp3.sse.EventSource;
@@ -12,10 +13,23 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 @Slf4j
@@ -23,6 +37,13 @@ public class ChatGLMClient {
 
     private final ChatGLMConfig chatGLMConfig;
     private final OkHttpClient client;
+    // Non-blocking client for the async path. Its selector thread serves every open stream
+    // and hands received lines to httpExecutor, which only parses them; the blocking writes
+    // to chat clients run on writeExecutor
+    private final HttpClient asyncClient;
+    private final ExecutorService httpExecutor;
+    private final ExecutorService writeExecutor;
+    private final ScheduledExecutorService streamWatchdog;
     private final ObjectMapper mapper;
 
     public ChatGLMClient(ChatGLMConfig chatGLMConfig, ObjectMapper mapper) {
@@ -33,6 +54,123 @@ public class ChatGLMClient {
                 .readTimeout(60, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
                 .build();
+        // Fixed size: without an executor HttpClient falls back to an unbounded cached pool
+        this.httpExecutor = Executors.newFixedThreadPool(Math.max(1, chatGLMConfig.getHttpThreads()), daemon("chatglm-http-"));
+        this.writeExecutor = Executors.newFixedThreadPool(Math.max(1, chatGLMConfig.getWriteThreads()), daemon("chatglm-write-"));
+        this.streamWatchdog = Executors.newSingleThreadScheduledExecutor(daemon("chatglm-watchdog-"));
+        this.asyncClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(httpExecutor)
+                .build();
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Bounded pool behind this client's HttpClient, for other non-blocking HTTP clients to
+     * share. Tasks on it must never block.
+     */
+    public Executor getHttpExecutor() {
+        return httpExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamWatchdog.shutdownNow();
+        writeExecutor.shutdownNow();
+        httpExecutor.shutdownNow();
+    }
+
+    /**
+     * Stream the answer into {@code emitter} without holding a thread for the duration of
+     * the stream. A thread of the chatglm.write-threads pool is busy only while a delta is
+     * written, so slow clients can make other streams' writes wait, but never the reading
+     * of their responses or other ChatGLM calls. A stream that goes quiet for
+     * chatglm.stream-idle-timeout-seconds fails.
+     */
+    public void streamGenerateAsync(String prompt, SseEmitter emitter) {
+        log.info("Calling ChatGLM API (async stream) with prompt: {}", prompt);
+        HttpRequest request;
+        try {
+            request = asyncRequest(prompt, true);
+        } catch (Exception e) {
+            log.error("Error initiating ChatGLM stream", e);
+            emitter.completeWithError(e);
+            return;
+        }
+        ChatGLMStreamSubscriber subscriber = new ChatGLMStreamSubscriber(emitter, mapper, writeExecutor,
+                streamWatchdog, TimeUnit.SECONDS.toMillis(chatGLMConfig.getStreamIdleTimeoutSeconds()));
+        asyncClient.sendAsync(request, info -> info.statusCode() == 200
+                        ? HttpResponse.BodySubscribers.fromLineSubscriber(subscriber)
+                        : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), body -> {
+                            log.error("ChatGLM stream failed with code: {} and body: {}", info.statusCode(), body);
+                            emitter.completeWithError(new IOException("Unexpected code " + info.statusCode()));
+                            return null;
+                        }))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        log.error("ChatGLM Stream Failed", error);
+                        emitter.completeWithError(error);
+                    }
+                });
+    }
+
+    /**
+     * Non-blocking {@link #generate(String)}.
+     */
+    public CompletableFuture<String> generateAsync(String prompt) {
+        log.info("Calling ChatGLM API (async) with prompt: {}", prompt);
+        HttpRequest request;
+        try {
+            request = asyncRequest(prompt, false);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return asyncClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        log.error("ChatGLM API call failed with code: {} and body: {}", response.statusCode(), response.body());
+                        throw new RuntimeException("Failed to call ChatGLM API: HTTP " + response.statusCode());
+                    }
+                    try {
+                        JsonNode rootNode = mapper.readTree(response.body());
+                        if (rootNode.has("choices") && rootNode.get("choices").isArray() && rootNode.get("choices").size() > 0) {
+                            return rootNode.get("choices").get(0).path("message").path("content").asText();
+                        }
+                        return response.body();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to call ChatGLM API", e);
+                    }
+                });
+    }
+
+    private HttpRequest asyncRequest(String prompt, boolean stream) throws IOException {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+
+        Map<String, Object> requestBodyMap = new HashMap<>();
+        requestBodyMap.put("model", chatGLMConfig.getModel());
+        requestBodyMap.put("messages", Collections.singletonList(message));
+        requestBodyMap.put("temperature", 0.6);
+        if (stream) {
+            requestBodyMap.put("stream", true);
+        }
+
+        return HttpRequest.newBuilder(URI.create(chatGLMConfig.getApiUrl()))
+                // Only bounds the wait for response headers, not the stream itself
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", "Bearer " + chatGLMConfig.getApiKey())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(requestBodyMap)))
+                .build();
     }
 
     public void streamGenerate(String prompt, SseEmitter emitter) {
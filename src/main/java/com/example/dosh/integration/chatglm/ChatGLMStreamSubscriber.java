@@ -0,0 +1,157 @@
+package com.example.dosh.integration.chatglm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds ChatGLM's SSE lines into an {@link SseEmitter} one at a time: the next line is
+ * only requested once the previous delta was written, so a slow client slows the upstream
+ * read instead of piling up buffers. Lines arrive on the HttpClient's executor, which only
+ * parses them; the blocking write runs on {@code writer}, so a slow client never holds up
+ * body delivery for other streams. If ChatGLM sends nothing for {@code idleTimeoutMs}
+ * while a line is wanted, the stream is cancelled and the emitter fails.
+ */
+@Slf4j
+class ChatGLMStreamSubscriber implements Flow.Subscriber<String> {
+
+    private final SseEmitter emitter;
+    private final ObjectMapper mapper;
+    private final Executor writer;
+    private final ScheduledExecutorService watchdog;
+    private final long idleTimeoutMs;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile Flow.Subscription subscription;
+    // When the next line was requested; 0 while a delta is being written
+    private volatile long awaitingSince;
+    private volatile ScheduledFuture<?> idleCheck;
+
+    ChatGLMStreamSubscriber(SseEmitter emitter, ObjectMapper mapper, Executor writer,
+                            ScheduledExecutorService watchdog, long idleTimeoutMs) {
+        this.emitter = emitter;
+        this.mapper = mapper;
+        this.writer = writer;
+        this.watchdog = watchdog;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        // Client went away: stop reading from ChatGLM
+        emitter.onCompletion(this::stop);
+        emitter.onTimeout(this::stop);
+        if (idleTimeoutMs > 0) {
+            long period = Math.max(100, idleTimeoutMs / 4);
+            idleCheck = watchdog.scheduleWithFixedDelay(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+        requestNext();
+    }
+
+    @Override
+    public void onNext(String line) {
+        awaitingSince = 0;
+        if (!line.startsWith("data:")) {
+            requestNext();
+            return;
+        }
+        String data = line.substring(5).trim();
+        if ("[DONE]".equals(data)) {
+            complete();
+            return;
+        }
+        String content;
+        try {
+            JsonNode choices = mapper.readTree(data).path("choices");
+            JsonNode delta = choices.isArray() && choices.size() > 0 ? choices.get(0).path("delta") : null;
+            content = delta != null && delta.has("content") ? delta.get("content").asText() : null;
+        } catch (Exception e) {
+            log.error("Error parsing stream data", e);
+            content = null;
+        }
+        if (content == null) {
+            requestNext();
+            return;
+        }
+        String delta = content;
+        try {
+            writer.execute(() -> write(delta));
+        } catch (RejectedExecutionException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("ChatGLM Stream Failed", throwable);
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        log.info("ChatGLM Stream Closed");
+        complete();
+    }
+
+    private void write(String delta) {
+        try {
+            emitter.send(SseEmitter.event().data(delta));
+        } catch (java.io.IOException e) {
+            log.debug("Chat client disconnected: {}", e.getMessage());
+            finished.set(true);
+            stop();
+            return;
+        } catch (Exception e) {
+            log.error("Error writing stream data", e);
+        }
+        requestNext();
+    }
+
+    private void requestNext() {
+        if (finished.get()) {
+            return;
+        }
+        awaitingSince = System.nanoTime();
+        subscription.request(1);
+    }
+
+    private void checkIdle() {
+        long since = awaitingSince;
+        if (since != 0 && System.nanoTime() - since > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) {
+            log.warn("ChatGLM stream idle for more than {} ms, giving up", idleTimeoutMs);
+            fail(new TimeoutException("No data from ChatGLM for " + idleTimeoutMs + " ms"));
+        }
+    }
+
+    private void stop() {
+        subscription.cancel();
+        ScheduledFuture<?> check = idleCheck;
+        if (check != null) {
+            check.cancel(false);
+        }
+    }
+
+    private void fail(Throwable error) {
+        if (finished.compareAndSet(false, true)) {
+            stop();
+            emitter.completeWithError(error);
+        }
+    }
+
+    private void complete() {
+        if (finished.compareAndSet(false, true)) {
+            stop();
+            emitter.complete();
+        }
+    }
+}
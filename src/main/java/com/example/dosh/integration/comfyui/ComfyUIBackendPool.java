@@ -0,0 +1,263 @@
+package com.example.dosh.integration.comfyui;
+
+import com.example.dosh.config.ComfyUIConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Tracks every configured ComfyUI backend: its queue depth from {@code /queue}, how many of
+ * our prompts it is running, and whether it answers at all. Prompts go to the least loaded
+ * healthy backend. A single slow or failed poll is not enough to call a backend down, since
+ * a GPU busy loading models can miss the read timeout; it takes {@code down-after-failures}
+ * in a row. Only then, and only if another backend is healthy to take over, do listeners
+ * hear about it so its prompts can fail over; they also hear about it coming back. A
+ * dropped WebSocket is not a failure here: the session reconnects and history polling
+ * picks up prompts that finished meanwhile. Polling starts with the first prompt.
+ */
+@Slf4j
+@Component
+public class ComfyUIBackendPool {
+
+    private final ObjectMapper mapper;
+    private final long healthCheckSeconds;
+    private final int downAfterFailures;
+    private final Map<String, Backend> backends = new LinkedHashMap<>();
+    private final List<Consumer<String>> downListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> upListeners = new CopyOnWriteArrayList<>();
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(3, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.SECONDS)
+            .build();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "comfyui-health");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean started;
+
+    public ComfyUIBackendPool(ComfyUIConfig config, ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.healthCheckSeconds = Math.max(1, config.getHealthCheckSeconds());
+        this.downAfterFailures = Math.max(1, config.getDownAfterFailures());
+        for (String address : config.resolveServers()) {
+            backends.put(address, new Backend(address));
+        }
+    }
+
+    /**
+     * Called with the backend address when its prompts should fail over: it missed
+     * {@code down-after-failures} polls in a row and another backend is healthy.
+     */
+    public void addDownListener(Consumer<String> listener) {
+        downListeners.add(listener);
+    }
+
+    /**
+     * Called with the backend address when a backend that was down answers again. Runs on
+     * the polling thread, so listeners should hand slow work off.
+     */
+    public void addUpListener(Consumer<String> listener) {
+        upListeners.add(listener);
+    }
+
+    /**
+     * Pick the least loaded healthy backend and count a prompt against it. Pair with
+     * {@link #release}.
+     *
+     * @param exclude backends already tried for this prompt
+     * @throws BackendDownException if no healthy backend is left
+     */
+    public String acquire(Set<String> exclude) {
+        ensureStarted();
+        synchronized (backends) {
+            Backend best = null;
+            for (Backend backend : backends.values()) {
+                if (!backend.healthy || exclude.contains(backend.address)) continue;
+                if (best == null || backend.load() < best.load()) {
+                    best = backend;
+                }
+            }
+            if (best == null) {
+                throw new BackendDownException("No healthy ComfyUI backend available");
+            }
+            best.inFlight++;
+            return best.address;
+        }
+    }
+
+    public void release(String address) {
+        synchronized (backends) {
+            Backend backend = backends.get(address);
+            if (backend != null && backend.inFlight > 0) {
+                backend.inFlight--;
+            }
+        }
+    }
+
+    /**
+     * Take a backend out of rotation right away, e.g. after a failed request, instead of
+     * waiting for the next poll. Prompts already running there are left alone.
+     */
+    public void markDown(String address, String reason) {
+        synchronized (backends) {
+            Backend backend = backends.get(address);
+            if (backend == null || !backend.healthy) return;
+            backend.healthy = false;
+        }
+        log.warn("ComfyUI backend {} taken out of rotation: {}", address, reason);
+    }
+
+    public boolean isHealthy(String address) {
+        synchronized (backends) {
+            Backend backend = backends.get(address);
+            return backend != null && backend.healthy;
+        }
+    }
+
+    public List<BackendStatus> getStatus() {
+        synchronized (backends) {
+            List<BackendStatus> status = new ArrayList<>();
+            for (Backend backend : backends.values()) {
+                status.add(new BackendStatus(backend.address, backend.healthy, backend.queued, backend.inFlight));
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Poll every backend's /queue once.
+     */
+    void refresh() {
+        List<String> addresses;
+        synchronized (backends) {
+            addresses = new ArrayList<>(backends.keySet());
+        }
+        for (String address : addresses) {
+            Request request = new Request.Builder().url(String.format("http://%s/queue", address)).build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    pollFailed(address, "HTTP " + response.code());
+                    continue;
+                }
+                JsonNode queue = mapper.readTree(response.body().string());
+                int depth = queue.path("queue_running").size() + queue.path("queue_pending").size();
+                answered(address, depth);
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return; // shutting down, not a backend failure
+                }
+                pollFailed(address, e.getMessage());
+            }
+        }
+    }
+
+    private void pollFailed(String address, String reason) {
+        boolean failOver;
+        synchronized (backends) {
+            Backend backend = backends.get(address);
+            if (backend == null) return;
+            if (++backend.failures < downAfterFailures) {
+                log.debug("ComfyUI backend {} poll failed ({}/{}): {}", address, backend.failures, downAfterFailures, reason);
+                return;
+            }
+            if (backend.healthy) {
+                log.warn("ComfyUI backend {} is down: {}", address, reason);
+            }
+            backend.healthy = false;
+            backend.queued = 0;
+            // Failing prompts over with nowhere to go would only throw away their results
+            failOver = !backend.failedOver && backends.values().stream().anyMatch(b -> b.healthy);
+            backend.failedOver |= failOver;
+        }
+        if (failOver) {
+            downListeners.forEach(listener -> listener.accept(address));
+        }
+    }
+
+    private void answered(String address, int queued) {
+        boolean cameBack;
+        synchronized (backends) {
+            Backend backend = backends.get(address);
+            if (backend == null) return;
+            cameBack = !backend.healthy;
+            backend.healthy = true;
+            backend.queued = queued;
+            backend.failures = 0;
+            backend.failedOver = false;
+        }
+        if (cameBack) {
+            log.info("ComfyUI backend {} is back", address);
+            upListeners.forEach(listener -> listener.accept(address));
+        }
+    }
+
+    private void ensureStarted() {
+        if (started) return;
+        synchronized (this) {
+            if (started) return;
+            started = true;
+            poller.scheduleWithFixedDelay(this::refresh, 0, healthCheckSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    private static class Backend {
+        private final String address;
+        // Optimistic until the first poll says otherwise
+        private boolean healthy = true;
+        private int queued;
+        private int inFlight;
+        // Consecutive failed polls
+        private int failures;
+        // Its prompts were failed over since it last answered
+        private boolean failedOver;
+
+        Backend(String address) {
+            this.address = address;
+        }
+
+        // /queue lags behind prompts we just sent, so count our own in-flight ones too
+        int load() {
+            return Math.max(queued, inFlight);
+        }
+    }
+
+    @Getter
+    public static class BackendStatus {
+        private final String address;
+        private final boolean healthy;
+        private final int queued;
+        private final int inFlight;
+
+        BackendStatus(String address, boolean healthy, int queued, int inFlight) {
+            this.address = address;
+            this.healthy = healthy;
+            this.queued = queued;
+            this.inFlight = inFlight;
+        }
+    }
+
+    /**
+     * The backend running a prompt went away; the prompt can be sent elsewhere.
+     */
+    public static class BackendDownException extends RuntimeException {
+        public BackendDownException(String message) {
+            super(message);
+        }
+    }
+}
@@ -5,22 +5,22 @@ import com.example.dosh.service.oss.MinioService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.nio.ByteBuffer;
-import java.nio.file.Files;
+import java.net.URLConnection;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @Component
@@ -28,187 +28,303 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class ComfyUIClient {
 
+    private static final long EXECUTION_TIMEOUT_MINUTES = 60;
+    private static final long HISTORY_POLL_SECONDS = 30;
+    private static final String WAN_2_1_WORKFLOW_ID = "wan2.1";
+
     private final ComfyUIConfig comfyUIConfig;
     private final MinioService minioService;
     private final ObjectMapper mapper;
+    private final ComfyUIBackendPool backendPool;
+    // One shared WebSocket per ComfyUI server
+    private final Map<String, ComfyUISession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, ComfyUIModelResidency> residencies = new ConcurrentHashMap<>();
+    // Prompts that failed over while still queued or running on a backend that went down
+    private final Map<String, Set<String>> abandonedPrompts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService residencyScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "comfyui-residency");
+        t.setDaemon(true);
+        return t;
+    });
     private final OkHttpClient httpClient = new OkHttpClient.Builder()
             .readTimeout(60, TimeUnit.MINUTES) // Long timeout for generation
             .connectTimeout(60, TimeUnit.SECONDS)
             .build();
+    private final OkHttpClient controlClient = httpClient.newBuilder()
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+    private ComfyUIImageBatcher batcher;
+    private ExecutorService outputExecutor;
 
     /**
-     * Generate image(s) based on prompt.
+     * Generate image(s) based on prompt. Identical prompts arriving together share one
+     * ComfyUI batch.
      *
      * @param promptText The user's prompt.
      * @return List of MinIO URLs for the generated images.
      */
     public List<String> generateImage(String promptText) {
-        String clientId = UUID.randomUUID().toString();
-        List<String> resultUrls = new ArrayList<>();
+        return generateImage(promptText, ComfyUIProgressListener.NONE);
+    }
 
+    /**
+     * Same as {@link #generateImage(String)}, reporting live progress to {@code listener}.
+     */
+    public List<String> generateImage(String promptText, ComfyUIProgressListener listener) {
         try {
-            // 1. Prepare Workflow
-            long seed = Math.abs(new Random().nextLong());
-            String workflowJson = ComfyUIWorkflowTemplates.WAN_2_1_WORKFLOW
-                    .replace("%POSITIVE_PROMPT%", promptText.replace("\"", "\\\"")) // Simple escape
-                    .replace("%SEED%", String.valueOf(seed));
-            
-            JsonNode prompt = mapper.readTree(workflowJson);
-
-            // 2. Connect WebSocket & Queue Prompt
-            Map<String, ByteBuffer> imagesData = executeWorkflow(prompt, clientId);
-
-            // 3. Process & Upload Images
-            if (imagesData.isEmpty()) {
-                throw new RuntimeException("No images received from ComfyUI.");
-            }
-
-            for (Map.Entry<String, ByteBuffer> entry : imagesData.entrySet()) {
-                String key = entry.getKey();
-                ByteBuffer data = entry.getValue();
-                
-                // Create temp file
-                File tempFile = File.createTempFile("comfy_" + key + "_", ".png");
-                try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                    byte[] bytes = new byte[data.remaining()];
-                    data.get(bytes);
-                    fos.write(bytes);
-                }
-
-                // Upload to MinIO
-                log.info("Uploading generated image to MinIO: {}", tempFile.getName());
-                String objectName = minioService.uploadLocalFile(tempFile, "image/png");
-                String url = minioService.getFileUrl(objectName, 60 * 24); // 24 hours
-                resultUrls.add(url);
-                log.info("Image uploaded successfully: {}", url);
-
-                // Cleanup
-                Files.deleteIfExists(tempFile.toPath());
-            }
-
+            return batcher.generate(promptText, listener);
         } catch (Exception e) {
             log.error("ComfyUI generation failed", e);
             throw new RuntimeException("Image generation failed: " + e.getMessage());
         }
-
-        return resultUrls;
     }
 
-    private Map<String, ByteBuffer> executeWorkflow(JsonNode prompt, String clientId) throws Exception {
-        // 0. Free Memory (Try to unload models before starting)
-        unloadModels();
+    private List<String> generateBatch(String promptText, int batchSize, ComfyUIProgressListener listener) throws Exception {
+        List<String> resultUrls = new ArrayList<>();
 
-        Map<String, ByteBuffer> outputImages = new ConcurrentHashMap<>();
+        // 1. Prepare Workflow
+        long seed = Math.abs(new Random().nextLong());
+        String workflowJson = ComfyUIWorkflowTemplates.WAN_2_1_WORKFLOW
+                .replace("%POSITIVE_PROMPT%", promptText.replace("\"", "\\\"")) // Simple escape
+                .replace("%SEED%", String.valueOf(seed))
+                .replace("%BATCH_SIZE%", String.valueOf(batchSize));
         
-        // 1. WebSocket Listener (Connect BEFORE queuing prompt)
-        CountDownLatch latch = new CountDownLatch(1);
-        String serverAddress = comfyUIConfig.getServerAddress();
-        String wsUrl = String.format("ws://%s/ws?clientId=%s", serverAddress, clientId);
+        JsonNode prompt = mapper.readTree(workflowJson);
 
-        // We need a container for promptId because it's available only after queueing
-        final StringBuilder promptIdRef = new StringBuilder();
+        // 2. Connect WebSocket & Queue Prompt
+        List<ComfyUIOutput> outputs = executeWorkflow(prompt, WAN_2_1_WORKFLOW_ID, listener);
 
-        WebSocketClient wsClient = new WebSocketClient(new URI(wsUrl)) {
-            private String currentNode = "";
+        // 3. Upload straight from the socket buffers or the /view stream, no temp files
+        if (outputs.isEmpty()) {
+            throw new RuntimeException("No images received from ComfyUI.");
+        }
 
-            @Override
-            public void onOpen(ServerHandshake handshakedata) {
-                log.info("ComfyUI WebSocket Connected");
+        // Each output is uploaded exactly once; /view fetches run in parallel
+        List<CompletableFuture<String>> uploads = new ArrayList<>();
+        for (ComfyUIOutput output : outputs) {
+            uploads.add(CompletableFuture.supplyAsync(() -> uploadOutput(output), outputExecutor));
+        }
+        for (CompletableFuture<String> upload : uploads) {
+            try {
+                resultUrls.add(upload.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
             }
+        }
 
-            @Override
-            public void onMessage(String message) {
-                try {
-                    JsonNode msg = mapper.readTree(message);
-                    if (msg.has("type") && "executing".equals(msg.get("type").asText())) {
-                        JsonNode data = msg.get("data");
-                        String currentPromptId = promptIdRef.toString();
-                        if (!currentPromptId.isEmpty() && data.has("prompt_id") && data.get("prompt_id").asText().equals(currentPromptId)) {
-                            if (data.get("node").isNull()) {
-                                log.info("ComfyUI Execution finished.");
-                                latch.countDown();
-                            } else {
-                                currentNode = data.get("node").asText();
-                                log.debug("Executing node: {}", currentNode);
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    log.error("Error parsing WS message", e);
-                }
-            }
+        return resultUrls;
+    }
 
-            @Override
-            public void onMessage(ByteBuffer bytes) {
-                 // Binary data via WebSocket (Preview or SaveImageWebsocket)
-                 log.debug("Received binary data via WS ({} bytes)", bytes.remaining());
-                 if (bytes.remaining() > 8) {
-                    bytes.position(8); // Skip header
-                    ByteBuffer imageData = bytes.slice();
-                    String key = currentNode.isEmpty() ? "unknown_" + System.currentTimeMillis() : currentNode;
-                    if (outputImages.containsKey(key)) {
-                         key = key + "_" + System.currentTimeMillis();
-                    }
-                    outputImages.put(key, imageData);
-                 }
+    // Send to the least loaded backend; if it goes away mid-prompt, run the prompt on another
+    private List<ComfyUIOutput> executeWorkflow(JsonNode prompt, String workflowId, ComfyUIProgressListener listener) throws Exception {
+        Set<String> tried = new HashSet<>();
+        while (true) {
+            String serverAddress = backendPool.acquire(tried);
+            tried.add(serverAddress);
+            try {
+                return executeOn(serverAddress, prompt, workflowId, listener);
+            } catch (ComfyUIBackendPool.BackendDownException e) {
+                log.warn("ComfyUI backend {} failed ({}), trying another", serverAddress, e.getMessage());
+            } finally {
+                backendPool.release(serverAddress);
             }
+        }
+    }
 
-            @Override
-            public void onClose(int code, String reason, boolean remote) {
-                log.info("ComfyUI WebSocket Closed: {}", reason);
-                if (latch.getCount() > 0) latch.countDown();
+    private List<ComfyUIOutput> executeOn(String serverAddress, JsonNode prompt, String workflowId,
+                                          ComfyUIProgressListener listener) throws Exception {
+        // 1. Listen on the shared session BEFORE queuing, under an id we pick ourselves
+        ComfyUISession session = session(serverAddress);
+        try {
+            session.ensureConnected();
+        } catch (IOException e) {
+            backendPool.markDown(serverAddress, e.getMessage());
+            throw new ComfyUIBackendPool.BackendDownException(e.getMessage());
+        }
+        String promptId = UUID.randomUUID().toString();
+        Map<String, String> nodeClasses = nodeClasses(prompt);
+        ComfyUISession.PromptExecution execution = session.register(promptId, nodeClasses, listener);
+        // Free memory only if the residency policy says so; warm models are the fast path
+        ComfyUIModelResidency residency = residency(serverAddress);
+        residency.beforePrompt(workflowId);
+        try {
+            // 2. Queue Prompt
+            JsonNode responseNode = queuePrompt(serverAddress, prompt, session.getClientId(), promptId);
+            String queuedId = responseNode.path("prompt_id").asText(promptId);
+            if (!queuedId.equals(promptId)) {
+                // Older ComfyUI ignores client-chosen ids; the history check below still finds it
+                log.warn("ComfyUI assigned prompt id {} instead of {}", queuedId, promptId);
+                session.unregister(promptId);
+                promptId = queuedId;
+                execution = session.register(promptId, nodeClasses, listener);
             }
-
-            @Override
-            public void onError(Exception ex) {
-                log.error("ComfyUI WebSocket Error", ex);
+            log.info("ComfyUI Prompt queued. ID: {}", promptId);
+
+            log.info("Waiting for ComfyUI execution...");
+            try {
+                awaitCompletion(serverAddress, execution);
+            } catch (ComfyUIBackendPool.BackendDownException e) {
+                // It is about to run elsewhere; cancel this copy once the backend answers again
+                abandonedPrompts.computeIfAbsent(serverAddress, a -> ConcurrentHashMap.newKeySet()).add(promptId);
+                throw e;
             }
-        };
+        } finally {
+            session.unregister(promptId);
+            residency.afterPrompt();
+        }
 
-        wsClient.connectBlocking();
-        
-        // 2. Queue Prompt
-        JsonNode responseNode = queuePrompt(prompt, clientId);
-        String promptId = responseNode.get("prompt_id").asText();
-        promptIdRef.append(promptId);
-        log.info("ComfyUI Prompt queued. ID: {}", promptId);
+        // 3. SaveImageWebsocket frames are complete; everything else is listed in history
+        // and fetched from /view, skipping nodes whose images already came over the socket
+        Map<String, ComfyUIOutput> outputs = new LinkedHashMap<>();
+        new TreeMap<>(execution.getOutputs()).forEach((key, data) -> outputs.put(key, ComfyUIOutput.received(key, data)));
+        listHistoryOutputs(serverAddress, promptId, execution.getDeliveredNodes(), outputs);
 
-        log.info("Waiting for ComfyUI execution...");
-        
-        // Wait up to 60 minutes (configurable?)
-        boolean completed = latch.await(60, TimeUnit.MINUTES);
-        wsClient.close();
+        return new ArrayList<>(outputs.values());
+    }
+
+    // Wait for the socket to report completion; history is polled in between in case the
+    // finishing message was lost to a reconnect
+    private void awaitCompletion(String serverAddress, ComfyUISession.PromptExecution execution) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(EXECUTION_TIMEOUT_MINUTES);
+        while (true) {
+            try {
+                execution.getDone().get(HISTORY_POLL_SECONDS, TimeUnit.SECONDS);
+                return;
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (e.getCause() instanceof ComfyUIBackendPool.BackendDownException down) {
+                    throw down;
+                }
+                throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+            } catch (java.util.concurrent.TimeoutException e) {
+                if (isFinishedInHistory(serverAddress, execution.getPromptId())) {
+                    log.info("ComfyUI execution {} found finished in history", execution.getPromptId());
+                    return;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException("ComfyUI execution timed out.");
+                }
+            }
+        }
+    }
 
-        if (!completed) {
-            throw new RuntimeException("ComfyUI execution timed out.");
+    private boolean isFinishedInHistory(String serverAddress, String promptId) {
+        try {
+            String historyUrl = String.format("http://%s/history/%s", serverAddress, promptId);
+            Request request = new Request.Builder().url(historyUrl).build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) return false;
+                JsonNode promptHistory = mapper.readTree(response.body().string()).get(promptId);
+                return promptHistory != null && promptHistory.path("status").path("completed").asBoolean(false);
+            }
+        } catch (Exception e) {
+            log.debug("History check for {} failed: {}", promptId, e.getMessage());
+            return false;
         }
+    }
+
+    private ComfyUISession session(String serverAddress) {
+        return sessions.computeIfAbsent(serverAddress, address -> new ComfyUISession(address, mapper));
+    }
 
-        // 3. Fallback: Fetch from History (if not received via WS)
-        // Usually SaveImage node writes to disk and we can fetch via history.
-        // Even if we got some via WS, checking history ensures we get the final outputs.
-        fetchImagesFromHistory(promptId, outputImages);
+    private ComfyUIModelResidency residency(String serverAddress) {
+        return residencies.computeIfAbsent(serverAddress, address -> new ComfyUIModelResidency(
+                comfyUIConfig.getModelResidency(), comfyUIConfig.getIdleUnloadSeconds(),
+                () -> unloadModels(address), residencyScheduler));
+    }
 
-        return outputImages;
+    @PostConstruct
+    public void init() {
+        outputExecutor = Executors.newFixedThreadPool(Math.max(1, comfyUIConfig.getOutputFetchConcurrency()), r -> {
+            Thread t = new Thread(r, "comfyui-output");
+            t.setDaemon(true);
+            return t;
+        });
+        batcher = new ComfyUIImageBatcher(comfyUIConfig.getImageBatchWindowMs(),
+                comfyUIConfig.getImageBatchMaxSize(), this::generateBatch);
+        // Fail prompts waiting on a backend that went away so they can be sent elsewhere
+        backendPool.addDownListener(address -> {
+            ComfyUISession session = sessions.get(address);
+            if (session != null) {
+                session.failPending(new ComfyUIBackendPool.BackendDownException("ComfyUI backend " + address + " went down"));
+            }
+        });
+        backendPool.addUpListener(address -> outputExecutor.execute(() -> cancelAbandoned(address)));
     }
 
-    private JsonNode queuePrompt(JsonNode prompt, String clientId) throws IOException {
-        String url = String.format("http://%s/prompt", comfyUIConfig.getServerAddress());
+    @PreDestroy
+    public void shutdown() {
+        residencyScheduler.shutdownNow();
+        outputExecutor.shutdownNow();
+        sessions.values().forEach(ComfyUISession::close);
+        sessions.clear();
+    }
+
+    private JsonNode queuePrompt(String serverAddress, JsonNode prompt, String clientId, String promptId) throws IOException {
+        String url = String.format("http://%s/prompt", serverAddress);
         ObjectNode p = mapper.createObjectNode();
         p.set("prompt", prompt);
         p.put("client_id", clientId);
+        p.put("prompt_id", promptId);
 
         RequestBody body = RequestBody.create(p.toString(), MediaType.get("application/json; charset=utf-8"));
         Request request = new Request.Builder().url(url).post(body).build();
 
-        try (Response response = httpClient.newCall(request).execute()) {
+        Response response;
+        try {
+            response = httpClient.newCall(request).execute();
+        } catch (IOException e) {
+            // Nothing was queued, so another backend can take it
+            backendPool.markDown(serverAddress, e.getMessage());
+            throw new ComfyUIBackendPool.BackendDownException(e.getMessage());
+        }
+        try (response) {
             if (!response.isSuccessful()) throw new IOException("Queue prompt failed: " + response);
             return mapper.readTree(response.body().string());
         }
     }
 
-    private void fetchImagesFromHistory(String promptId, Map<String, ByteBuffer> imagesMap) {
+    // Drop prompts that were re-run elsewhere from the returning backend's queue, and
+    // interrupt the one it is running if it is ours
+    private void cancelAbandoned(String serverAddress) {
+        Set<String> abandoned = abandonedPrompts.remove(serverAddress);
+        if (abandoned == null || abandoned.isEmpty()) {
+            return;
+        }
+        try {
+            ObjectNode delete = mapper.createObjectNode();
+            delete.set("delete", mapper.valueToTree(abandoned));
+            postControl(serverAddress, "/queue", delete.toString());
+
+            Request request = new Request.Builder().url(String.format("http://%s/queue", serverAddress)).build();
+            try (Response response = controlClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) throw new IOException("Queue lookup failed: " + response);
+                // Entries are [number, prompt_id, prompt, extra_data, outputs]
+                for (JsonNode running : mapper.readTree(response.body().string()).path("queue_running")) {
+                    String runningId = running.path(1).asText();
+                    if (abandoned.contains(runningId)) {
+                        postControl(serverAddress, "/interrupt", mapper.createObjectNode().put("prompt_id", runningId).toString());
+                    }
+                }
+            }
+            log.info("Cancelled {} prompt(s) on {} that were re-sent to another backend", abandoned.size(), serverAddress);
+        } catch (Exception e) {
+            log.warn("Failed to cancel abandoned prompts on {}: {}", serverAddress, e.getMessage());
+        }
+    }
+
+    private void postControl(String serverAddress, String path, String json) throws IOException {
+        Request request = new Request.Builder()
+                .url("http://" + serverAddress + path)
+                .post(RequestBody.create(json, MediaType.get("application/json; charset=utf-8")))
+                .build();
+        try (Response response = controlClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) throw new IOException("POST " + path + " failed: " + response);
+        }
+    }
+
+    private void listHistoryOutputs(String serverAddress, String promptId, Set<String> skipNodes, Map<String, ComfyUIOutput> outputs) {
         try {
-            String historyUrl = String.format("http://%s/history/%s", comfyUIConfig.getServerAddress(), promptId);
+            String historyUrl = String.format("http://%s/history/%s", serverAddress, promptId);
             Request request = new Request.Builder().url(historyUrl).build();
 
             try (Response response = httpClient.newCall(request).execute()) {
@@ -218,14 +334,17 @@ public class ComfyUIClient {
                 JsonNode promptHistory = historyRoot.get(promptId);
                 if (promptHistory == null || !promptHistory.has("outputs")) return;
 
-                JsonNode outputs = promptHistory.get("outputs");
-                outputs.fields().forEachRemaining(entry -> {
+                JsonNode nodeOutputs = promptHistory.get("outputs");
+                nodeOutputs.fields().forEachRemaining(entry -> {
                     String nodeId = entry.getKey();
                     JsonNode nodeOutput = entry.getValue();
+                    if (skipNodes.contains(nodeId)) {
+                        return;
+                    }
                     
-                    processOutputFiles(nodeId, nodeOutput, "images", imagesMap);
-                    processOutputFiles(nodeId, nodeOutput, "videos", imagesMap); // Wan2.1 might output video?
-                    processOutputFiles(nodeId, nodeOutput, "gifs", imagesMap);
+                    processOutputFiles(serverAddress, nodeId, nodeOutput, "images", outputs);
+                    processOutputFiles(serverAddress, nodeId, nodeOutput, "videos", outputs); // Wan2.1 might output video?
+                    processOutputFiles(serverAddress, nodeId, nodeOutput, "gifs", outputs);
                 });
             }
         } catch (Exception e) {
@@ -233,40 +352,59 @@ public class ComfyUIClient {
         }
     }
 
-    private void processOutputFiles(String nodeId, JsonNode nodeOutput, String fieldName, Map<String, ByteBuffer> imagesMap) {
+    private void processOutputFiles(String serverAddress, String nodeId, JsonNode nodeOutput, String fieldName, Map<String, ComfyUIOutput> outputs) {
         if (nodeOutput.has(fieldName)) {
             for (JsonNode file : nodeOutput.get(fieldName)) {
                 String filename = file.get("filename").asText();
                 String subfolder = file.get("subfolder").asText();
                 String type = file.get("type").asText();
-                
-                try {
-                    byte[] fileData = downloadFile(filename, subfolder, type);
-                    String key = nodeId + "_" + filename;
-                    // Only add if not already present (prefer WebSocket if it was faster/same)
-                    // Actually, History is more reliable for final output. Overwrite.
-                    imagesMap.put(key, ByteBuffer.wrap(fileData));
-                } catch (IOException e) {
-                    log.error("Failed to download {}", filename, e);
-                }
+                String key = nodeId + "_" + filename;
+                outputs.putIfAbsent(key, ComfyUIOutput.onServer(key, serverAddress, filename, subfolder, type));
             }
         }
     }
 
-    private byte[] downloadFile(String filename, String subfolder, String type) throws IOException {
-        String url = String.format("http://%s/view?filename=%s&subfolder=%s&type=%s", 
-                comfyUIConfig.getServerAddress(), filename, subfolder, type);
-        
+    private String uploadOutput(ComfyUIOutput output) {
+        try {
+            String objectName = output.isReceived()
+                    ? minioService.uploadBuffer(output.getData(), output.extension(), "image/png")
+                    : uploadFromServer(output);
+            String url = minioService.getFileUrl(objectName, 60 * 24); // 24 hours
+            log.info("Uploaded ComfyUI output {} to MinIO: {}", output.getKey(), url);
+            return url;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to store ComfyUI output " + output.getKey() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, String> nodeClasses(JsonNode prompt) {
+        Map<String, String> classes = new HashMap<>();
+        prompt.fields().forEachRemaining(node -> classes.put(node.getKey(), node.getValue().path("class_type").asText()));
+        return classes;
+    }
+
+    // Pipe /view into MinIO; the file is never held in memory or written to disk here
+    private String uploadFromServer(ComfyUIOutput output) throws Exception {
+        HttpUrl url = HttpUrl.get("http://" + output.getServerAddress() + "/view").newBuilder()
+                .addQueryParameter("filename", output.getFilename())
+                .addQueryParameter("subfolder", output.getSubfolder())
+                .addQueryParameter("type", output.getType())
+                .build();
+
         Request request = new Request.Builder().url(url).build();
         try (Response response = httpClient.newCall(request).execute()) {
             if (!response.isSuccessful()) throw new IOException("Download failed: " + response);
-            return response.body().bytes();
+            ResponseBody body = response.body();
+            MediaType mediaType = body.contentType();
+            String contentType = mediaType != null ? mediaType.toString()
+                    : URLConnection.guessContentTypeFromName(output.getFilename());
+            return minioService.uploadStream(body.byteStream(), body.contentLength(), output.extension(), contentType);
         }
     }
 
-    private void unloadModels() {
+    private void unloadModels(String serverAddress) {
         try {
-            String url = String.format("http://%s/free", comfyUIConfig.getServerAddress());
+            String url = String.format("http://%s/free", serverAddress);
             Request request = new Request.Builder()
                     .url(url)
                     .post(RequestBody.create("{\"unload_models\":true, \"free_memory\":true}", MediaType.get("application/json")))
@@ -0,0 +1,129 @@
+package com.example.dosh.integration.comfyui;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces image requests for the same prompt that arrive within a short window into one
+ * ComfyUI prompt with a larger batch size. The first caller leads: it waits out the window
+ * (or until the batch is full), runs the batch on its own thread and hands every follower
+ * its share of the images.
+ */
+@Slf4j
+class ComfyUIImageBatcher {
+
+    @FunctionalInterface
+    interface BatchRunner {
+        /**
+         * @return image URLs for the whole batch, ideally {@code batchSize} of them
+         */
+        List<String> run(String prompt, int batchSize, ComfyUIProgressListener listener) throws Exception;
+    }
+
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final BatchRunner runner;
+    private final Map<String, Batch> open = new HashMap<>();
+
+    ComfyUIImageBatcher(long windowMs, int maxBatchSize, BatchRunner runner) {
+        this.windowMs = windowMs;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.runner = runner;
+    }
+
+    /**
+     * Generate images for {@code prompt}, sharing a ComfyUI batch with identical requests.
+     */
+    List<String> generate(String prompt, ComfyUIProgressListener listener) throws Exception {
+        if (windowMs <= 0 || maxBatchSize == 1) {
+            return runner.run(prompt, 1, listener);
+        }
+        String key = prompt.trim();
+        Batch batch;
+        CompletableFuture<List<String>> mine = new CompletableFuture<>();
+        boolean leader;
+        synchronized (open) {
+            batch = open.get(key);
+            leader = batch == null;
+            if (leader) {
+                batch = new Batch(prompt);
+                open.put(key, batch);
+            }
+            batch.callers.add(mine);
+            batch.listeners.add(listener);
+            if (batch.callers.size() >= maxBatchSize) {
+                open.remove(key);
+                batch.full.complete(null);
+            }
+        }
+        if (leader) {
+            lead(key, batch);
+        }
+        try {
+            return mine.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private void lead(String key, Batch batch) {
+        try {
+            batch.full.get(windowMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Window over, run with whoever joined
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+        }
+        List<CompletableFuture<List<String>>> callers;
+        ComfyUIProgressListener listener;
+        synchronized (open) {
+            open.remove(key, batch);
+            callers = new ArrayList<>(batch.callers);
+            // Everyone in the batch watches the same prompt
+            listener = ComfyUIProgressListener.all(new ArrayList<>(batch.listeners));
+        }
+        if (callers.size() > 1) {
+            log.info("Running {} image requests as one ComfyUI batch", callers.size());
+        }
+        try {
+            List<String> urls = runner.run(batch.prompt, callers.size(), listener);
+            for (int i = 0; i < callers.size(); i++) {
+                callers.get(i).complete(share(urls, i, callers.size()));
+            }
+        } catch (Throwable t) {
+            callers.forEach(c -> c.completeExceptionally(t));
+        }
+    }
+
+    // Split the batch evenly; if ComfyUI returned fewer images than callers, everyone gets all
+    static List<String> share(List<String> urls, int index, int callers) {
+        int each = urls.size() / callers;
+        if (each == 0) {
+            return urls;
+        }
+        int from = index * each;
+        int to = index == callers - 1 ? urls.size() : from + each;
+        return new ArrayList<>(urls.subList(from, to));
+    }
+
+    private static class Batch {
+        private final String prompt;
+        private final List<CompletableFuture<List<String>>> callers = new ArrayList<>();
+        private final List<ComfyUIProgressListener> listeners = new ArrayList<>();
+        private final CompletableFuture<Void> full = new CompletableFuture<>();
+
+        Batch(String prompt) {
+            this.prompt = prompt;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.dosh.integration.comfyui;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when one ComfyUI server should free its models. Under the "idle" policy models
+ * stay loaded while prompts for the same workflow keep coming, and are freed once the
+ * server has been idle for a while or before a prompt for a different workflow, which
+ * needs the VRAM for its own models. A switch while prompts are still running frees the
+ * models once they have all finished. The unloader makes an HTTP call, so it always runs
+ * outside the monitor.
+ */
+@Slf4j
+class ComfyUIModelResidency {
+
+    static final String POLICY_IDLE = "idle";
+    static final String POLICY_ALWAYS = "always";
+    static final String POLICY_NEVER = "never";
+
+    private final String policy;
+    private final long idleUnloadSeconds;
+    private final Runnable unloader;
+    private final ScheduledExecutorService scheduler;
+
+    private String loadedWorkflow;
+    private int activePrompts;
+    private boolean freePending;
+    private ScheduledFuture<?> idleUnload;
+
+    ComfyUIModelResidency(String policy, long idleUnloadSeconds, Runnable unloader, ScheduledExecutorService scheduler) {
+        this.policy = policy;
+        this.idleUnloadSeconds = idleUnloadSeconds;
+        this.unloader = unloader;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Call before queueing a prompt for {@code workflowId}; may free the server's models.
+     */
+    void beforePrompt(String workflowId) {
+        boolean free = false;
+        synchronized (this) {
+            if (idleUnload != null) {
+                idleUnload.cancel(false);
+                idleUnload = null;
+            }
+            if (POLICY_ALWAYS.equalsIgnoreCase(policy)) {
+                free = true;
+            } else if (POLICY_IDLE.equalsIgnoreCase(policy) && loadedWorkflow != null && !loadedWorkflow.equals(workflowId)) {
+                if (activePrompts == 0) {
+                    log.info("Workflow changed from {} to {}, freeing models", loadedWorkflow, workflowId);
+                    free = true;
+                } else if (!freePending) {
+                    // Freeing now would unload models the running prompts still need
+                    log.info("Workflow changed from {} to {} with {} prompt(s) running, freeing models once they finish",
+                            loadedWorkflow, workflowId, activePrompts);
+                    freePending = true;
+                }
+            }
+            loadedWorkflow = workflowId;
+            activePrompts++;
+        }
+        if (free) {
+            unloader.run();
+        }
+    }
+
+    /**
+     * Call once the prompt has finished, successfully or not.
+     */
+    void afterPrompt() {
+        boolean free = false;
+        synchronized (this) {
+            activePrompts = Math.max(0, activePrompts - 1);
+            if (activePrompts > 0) {
+                return;
+            }
+            if (freePending) {
+                freePending = false;
+                loadedWorkflow = null;
+                free = true;
+            } else if (POLICY_IDLE.equalsIgnoreCase(policy) && idleUnloadSeconds > 0) {
+                idleUnload = scheduler.schedule(this::unloadIfIdle, idleUnloadSeconds, TimeUnit.SECONDS);
+            }
+        }
+        if (free) {
+            log.info("Prompts of the previous workflow finished, freeing models");
+            unloader.run();
+        }
+    }
+
+    private void unloadIfIdle() {
+        String workflow;
+        synchronized (this) {
+            if (activePrompts > 0 || loadedWorkflow == null) {
+                return;
+            }
+            workflow = loadedWorkflow;
+            loadedWorkflow = null;
+            idleUnload = null;
+        }
+        log.info("ComfyUI idle for {}s, freeing models of {}", idleUnloadSeconds, workflow);
+        unloader.run();
+    }
+}
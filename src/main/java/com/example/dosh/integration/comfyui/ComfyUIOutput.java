@@ -0,0 +1,48 @@
+package com.example.dosh.integration.comfyui;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One artifact produced by a prompt: either bytes that already arrived over the WebSocket,
+ * or a file still on the ComfyUI server that can be streamed from {@code /view}.
+ */
+@Getter
+class ComfyUIOutput {
+    private final String key;
+    private final ByteBuffer data;
+    private final String serverAddress;
+    private final String filename;
+    private final String subfolder;
+    private final String type;
+
+    private ComfyUIOutput(String key, ByteBuffer data, String serverAddress, String filename, String subfolder, String type) {
+        this.key = key;
+        this.data = data;
+        this.serverAddress = serverAddress;
+        this.filename = filename;
+        this.subfolder = subfolder;
+        this.type = type;
+    }
+
+    static ComfyUIOutput received(String key, ByteBuffer data) {
+        return new ComfyUIOutput(key, data, null, null, null, null);
+    }
+
+    static ComfyUIOutput onServer(String key, String serverAddress, String filename, String subfolder, String type) {
+        return new ComfyUIOutput(key, null, serverAddress, filename, subfolder, type);
+    }
+
+    boolean isReceived() {
+        return data != null;
+    }
+
+    String extension() {
+        if (filename == null) {
+            return ".png"; // SaveImageWebsocket sends PNG frames
+        }
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot) : "";
+    }
+}
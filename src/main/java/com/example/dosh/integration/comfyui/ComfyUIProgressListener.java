@@ -0,0 +1,77 @@
+package com.example.dosh.integration.comfyui;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Receives live progress of one ComfyUI prompt as reported over the WebSocket. Called on
+ * the socket thread shared by every prompt on that server, so implementations must return
+ * quickly and hand anything that can block, like writing to a client, to another thread.
+ */
+public interface ComfyUIProgressListener {
+
+    ComfyUIProgressListener NONE = new ComfyUIProgressListener() {
+    };
+
+    /**
+     * A node started executing.
+     */
+    default void onNode(String nodeId, String classType) {
+    }
+
+    /**
+     * Nodes whose results ComfyUI reused from an earlier prompt.
+     */
+    default void onCached(List<String> nodeIds) {
+    }
+
+    /**
+     * A sampler step finished, e.g. 5 of 20.
+     */
+    default void onStep(String nodeId, int value, int max) {
+    }
+
+    /**
+     * Intermediate image while sampling; the buffer is only valid during the call.
+     */
+    default void onPreview(String nodeId, ByteBuffer image, String mimeType) {
+    }
+
+    /**
+     * The prompt finished executing.
+     */
+    default void onFinished() {
+    }
+
+    static ComfyUIProgressListener all(List<ComfyUIProgressListener> listeners) {
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        return new ComfyUIProgressListener() {
+            @Override
+            public void onNode(String nodeId, String classType) {
+                listeners.forEach(l -> l.onNode(nodeId, classType));
+            }
+
+            @Override
+            public void onCached(List<String> nodeIds) {
+                listeners.forEach(l -> l.onCached(nodeIds));
+            }
+
+            @Override
+            public void onStep(String nodeId, int value, int max) {
+                listeners.forEach(l -> l.onStep(nodeId, value, max));
+            }
+
+            @Override
+            public void onPreview(String nodeId, ByteBuffer image, String mimeType) {
+                listeners.forEach(l -> l.onPreview(nodeId, image.duplicate(), mimeType));
+            }
+
+            @Override
+            public void onFinished() {
+                listeners.forEach(ComfyUIProgressListener::onFinished);
+            }
+        };
+    }
+}
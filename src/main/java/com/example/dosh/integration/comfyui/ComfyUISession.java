@@ -0,0 +1,281 @@
+package com.example.dosh.integration.comfyui;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One long-lived WebSocket to a ComfyUI server, shared by every generation sent to it.
+ * All prompts are queued under this session's client id, so ComfyUI reports them all on
+ * this socket; text messages are routed to the waiting execution by {@code prompt_id}.
+ * Binary frames carry no prompt id, but ComfyUI runs one prompt at a time, so they belong
+ * to whichever prompt is executing; only frames sent by a SaveImageWebsocket node are kept
+ * as outputs. The socket reconnects on its own after a drop.
+ */
+@Slf4j
+public class ComfyUISession {
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long MAX_RECONNECT_DELAY_MS = 30_000;
+    private static final String SAVE_IMAGE_WEBSOCKET = "SaveImageWebsocket";
+    private static final int PREVIEW_IMAGE = 1;
+
+    @Getter
+    private final String serverAddress;
+    @Getter
+    private final String clientId = UUID.randomUUID().toString();
+    private final ObjectMapper mapper;
+    private final Map<String, PromptExecution> executions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reconnector;
+
+    // Socket callbacks never take connectLock: connectBlocking() waits on them while holding it
+    private final Object connectLock = new Object();
+    private final AtomicLong reconnectDelayMs = new AtomicLong(1000);
+    private final AtomicBoolean reconnectPending = new AtomicBoolean();
+    private volatile WebSocketClient socket;
+    private volatile String runningPromptId;
+    private volatile boolean closed;
+
+    public ComfyUISession(String serverAddress, ObjectMapper mapper) {
+        this.serverAddress = serverAddress;
+        this.mapper = mapper;
+        this.reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "comfyui-ws-" + serverAddress);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Open the socket if it is not open yet. Cheap when already connected.
+     */
+    public void ensureConnected() throws Exception {
+        WebSocketClient current = socket;
+        if (current != null && current.isOpen()) {
+            return;
+        }
+        synchronized (connectLock) {
+            if (closed) {
+                throw new IllegalStateException("ComfyUI session closed");
+            }
+            if (socket != null && socket.isOpen()) {
+                return;
+            }
+            // A socket that is not open is closed or never connected; replacing it is enough
+            WebSocketClient fresh = newSocket();
+            socket = fresh;
+            if (!fresh.connectBlocking(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new java.io.IOException("Could not connect to ComfyUI WebSocket at " + serverAddress);
+            }
+        }
+    }
+
+    /**
+     * Start listening for a prompt. Register before queueing it so no message is missed.
+     *
+     * @param nodeClasses node id to class_type for the prompt; binary frames are outputs only
+     *                    while a SaveImageWebsocket node runs, otherwise sampler previews
+     */
+    public PromptExecution register(String promptId, Map<String, String> nodeClasses, ComfyUIProgressListener listener) {
+        PromptExecution execution = new PromptExecution(promptId, nodeClasses, listener);
+        executions.put(promptId, execution);
+        return execution;
+    }
+
+    public void unregister(String promptId) {
+        executions.remove(promptId);
+    }
+
+    /**
+     * Fail every prompt still waiting on this session, e.g. because the server went away.
+     */
+    public void failPending(Throwable cause) {
+        executions.values().forEach(e -> e.getDone().completeExceptionally(cause));
+    }
+
+    public int getPendingCount() {
+        return executions.size();
+    }
+
+    public void close() {
+        closed = true;
+        reconnector.shutdownNow();
+        WebSocketClient current = socket;
+        if (current != null) {
+            current.close();
+        }
+        executions.values().forEach(e -> e.getDone().completeExceptionally(new IllegalStateException("ComfyUI session closed")));
+        executions.clear();
+    }
+
+    private WebSocketClient newSocket() throws Exception {
+        URI uri = new URI(String.format("ws://%s/ws?clientId=%s", serverAddress, clientId));
+        return new WebSocketClient(uri) {
+            @Override
+            public void onOpen(ServerHandshake handshakedata) {
+                log.info("ComfyUI WebSocket connected to {}", serverAddress);
+                reconnectDelayMs.set(1000);
+            }
+
+            @Override
+            public void onMessage(String message) {
+                handleText(message);
+            }
+
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                handleBinary(bytes);
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {
+                log.info("ComfyUI WebSocket to {} closed: {}", serverAddress, reason);
+                scheduleReconnect(this);
+            }
+
+            @Override
+            public void onError(Exception ex) {
+                log.warn("ComfyUI WebSocket error on {}: {}", serverAddress, ex.getMessage());
+            }
+        };
+    }
+
+    // Reconnects run off the socket's own thread, which cannot reconnect itself
+    private void scheduleReconnect(WebSocketClient dropped) {
+        if (closed || dropped != socket || !reconnectPending.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = reconnectDelayMs.getAndUpdate(d -> Math.min(MAX_RECONNECT_DELAY_MS, d * 2));
+        try {
+            reconnector.schedule(() -> {
+                reconnectPending.set(false);
+                try {
+                    ensureConnected();
+                } catch (Exception e) {
+                    log.debug("ComfyUI reconnect to {} failed: {}", serverAddress, e.getMessage());
+                    scheduleReconnect(socket);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Session is shutting down
+        }
+    }
+
+    private void handleText(String message) {
+        try {
+            JsonNode msg = mapper.readTree(message);
+            String type = msg.path("type").asText();
+            JsonNode data = msg.path("data");
+            String promptId = data.path("prompt_id").asText(null);
+            if (promptId == null) {
+                return;
+            }
+            PromptExecution execution = executions.get(promptId);
+
+            switch (type) {
+                case "execution_start" -> runningPromptId = promptId;
+                case "executing" -> {
+                    if (data.path("node").isNull()) {
+                        if (promptId.equals(runningPromptId)) {
+                            runningPromptId = null;
+                        }
+                        if (execution != null) {
+                            log.info("ComfyUI execution {} finished", promptId);
+                            execution.listener.onFinished();
+                            execution.getDone().complete(null);
+                        }
+                    } else {
+                        runningPromptId = promptId;
+                        if (execution != null) {
+                            String node = data.path("node").asText();
+                            execution.currentNode = node;
+                            log.debug("Prompt {} executing node {}", promptId, node);
+                            execution.listener.onNode(node, execution.nodeClasses.get(node));
+                        }
+                    }
+                }
+                case "progress" -> {
+                    if (execution != null) {
+                        execution.listener.onStep(data.path("node").asText(execution.currentNode),
+                                data.path("value").asInt(), data.path("max").asInt());
+                    }
+                }
+                case "execution_cached" -> {
+                    if (execution != null) {
+                        List<String> nodes = new ArrayList<>();
+                        data.path("nodes").forEach(n -> nodes.add(n.asText()));
+                        execution.listener.onCached(nodes);
+                    }
+                }
+                case "execution_error", "execution_interrupted" -> {
+                    if (execution != null) {
+                        execution.getDone().completeExceptionally(new RuntimeException(
+                                "ComfyUI " + type.replace('_', ' ') + ": " + data.path("exception_message").asText("")));
+                    }
+                }
+                default -> {
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error parsing WS message", e);
+        }
+    }
+
+    private void handleBinary(ByteBuffer bytes) {
+        String promptId = runningPromptId;
+        PromptExecution execution = promptId != null ? executions.get(promptId) : null;
+        log.debug("Received binary data via WS ({} bytes) for prompt {}", bytes.remaining(), promptId);
+        String node = execution != null ? execution.currentNode : null;
+        if (node == null || bytes.remaining() <= 8) {
+            return;
+        }
+        // Header: event type, then image format (1 = JPEG, 2 = PNG) for previews
+        int eventType = bytes.getInt(0);
+        int format = bytes.getInt(4);
+        bytes.position(8);
+        ByteBuffer imageData = bytes.slice();
+        if (SAVE_IMAGE_WEBSOCKET.equals(execution.nodeClasses.get(node))) {
+            execution.getOutputs().put(node + "_" + execution.frames.incrementAndGet(), imageData);
+            execution.getDeliveredNodes().add(node);
+        } else if (eventType == PREVIEW_IMAGE) {
+            execution.listener.onPreview(node, imageData, format == 2 ? "image/png" : "image/jpeg");
+        }
+    }
+
+    /**
+     * State of one queued prompt as reported over the socket.
+     */
+    @Getter
+    public static class PromptExecution {
+        private final String promptId;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final Map<String, ByteBuffer> outputs = new ConcurrentHashMap<>();
+        // Nodes whose images arrived over the socket and need no /view download
+        private final Set<String> deliveredNodes = ConcurrentHashMap.newKeySet();
+        private final Map<String, String> nodeClasses;
+        private final ComfyUIProgressListener listener;
+        private final AtomicInteger frames = new AtomicInteger();
+        private volatile String currentNode;
+
+        PromptExecution(String promptId, Map<String, String> nodeClasses, ComfyUIProgressListener listener) {
+            this.promptId = promptId;
+            this.nodeClasses = nodeClasses;
+            this.listener = listener;
+        }
+    }
+}
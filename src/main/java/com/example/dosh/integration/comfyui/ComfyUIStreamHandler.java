@@ -1,4 +1,222 @@
 package com.example.dosh.integration.comfyui;
 
-public class ComfyUIStreamHandler {
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Forwards ComfyUI progress to a chat SSE stream as named events: "node" when execution
+ * moves to another node, "progress" for sampler steps, "preview" for intermediate images
+ * and "timings" with the time spent per node once the prompt is done. Step and preview
+ * events are throttled so a fast sampler cannot flood the client.
+ * <p>
+ * The callbacks run on the ComfyUI socket thread, which serves every prompt on that
+ * server, so they only queue the event; {@code sender} writes it to the client. While a
+ * slow client is still receiving, a newer progress or preview event replaces the queued
+ * one, so the queue stays small. Node and timings events are never dropped.
+ */
+@Slf4j
+public class ComfyUIStreamHandler implements ComfyUIProgressListener {
+
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final long PREVIEW_INTERVAL_MS = 1000;
+    private static final Set<String> REPLACEABLE = Set.of("progress", "preview");
+
+    private final SseEmitter emitter;
+    private final Executor sender;
+    private final Map<String, Long> nodeTimings = new LinkedHashMap<>();
+    private final Map<String, String> nodeClasses = new LinkedHashMap<>();
+    private final Deque<PendingEvent> pending = new ArrayDeque<>();
+    private String currentNode;
+    private long nodeStartedAt;
+    private long lastProgressAt;
+    private long lastPreviewAt;
+    private boolean draining;
+    private boolean closed;
+
+    public ComfyUIStreamHandler(SseEmitter emitter, Executor sender) {
+        this.emitter = emitter;
+        this.sender = sender;
+    }
+
+    @Override
+    public synchronized void onNode(String nodeId, String classType) {
+        closeNode();
+        currentNode = nodeId;
+        nodeStartedAt = System.currentTimeMillis();
+        if (classType != null) {
+            nodeClasses.put(nodeId, classType);
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("node", nodeId);
+        event.put("classType", classType);
+        send("node", () -> event);
+    }
+
+    @Override
+    public void onCached(List<String> nodeIds) {
+        if (!nodeIds.isEmpty()) {
+            send("node", () -> Map.of("cached", nodeIds));
+        }
+    }
+
+    @Override
+    public void onStep(String nodeId, int value, int max) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (value < max && now - lastProgressAt < PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastProgressAt = now;
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("node", nodeId);
+        event.put("step", value);
+        event.put("max", max);
+        event.put("percent", max > 0 ? Math.round(value * 1000.0 / max) / 10.0 : 0);
+        send("progress", () -> event);
+    }
+
+    @Override
+    public void onPreview(String nodeId, ByteBuffer image, String mimeType) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (now - lastPreviewAt < PREVIEW_INTERVAL_MS) {
+                return;
+            }
+            lastPreviewAt = now;
+        }
+        // The buffer is only valid during this call; encoding waits for the sender
+        byte[] bytes = new byte[image.remaining()];
+        image.get(bytes);
+        send("preview", () -> {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("node", nodeId);
+            event.put("image", "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(bytes));
+            return event;
+        });
+    }
+
+    @Override
+    public void onFinished() {
+        Map<String, Long> timings;
+        synchronized (this) {
+            closeNode();
+            currentNode = null;
+            timings = new LinkedHashMap<>(nodeTimings);
+        }
+        log.info("ComfyUI node timings (ms): {}", describe(timings));
+        send("timings", () -> timings);
+    }
+
+    public synchronized Map<String, Long> getNodeTimings() {
+        return new LinkedHashMap<>(nodeTimings);
+    }
+
+    /**
+     * Write out whatever is still queued, waiting at most {@code timeoutMs} for a send in
+     * progress. Call before sending the final result so it doesn't overtake progress events.
+     */
+    public void flush(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            while (draining) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return;
+                }
+                wait(left);
+            }
+            if (pending.isEmpty() || closed) {
+                return;
+            }
+            // Left behind by a rejected hand-off; send it from here
+            draining = true;
+        }
+        drain();
+    }
+
+    private void closeNode() {
+        if (currentNode != null && nodeStartedAt > 0) {
+            nodeTimings.merge(currentNode, System.currentTimeMillis() - nodeStartedAt, Long::sum);
+        }
+    }
+
+    private synchronized String describe(Map<String, Long> timings) {
+        StringBuilder sb = new StringBuilder();
+        timings.forEach((node, ms) -> sb.append(sb.length() > 0 ? ", " : "")
+                .append(node).append(nodeClasses.containsKey(node) ? "/" + nodeClasses.get(node) : "")
+                .append('=').append(ms));
+        return sb.toString();
+    }
+
+    private void send(String event, Supplier<Object> data) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (REPLACEABLE.contains(event)) {
+                pending.removeIf(p -> p.name.equals(event));
+            }
+            pending.add(new PendingEvent(event, data));
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            sender.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Stays queued; the next event or flush() tries again
+            synchronized (this) {
+                draining = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            PendingEvent next;
+            synchronized (this) {
+                next = closed ? null : pending.poll();
+                if (next == null) {
+                    pending.clear();
+                    draining = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            try {
+                emitter.send(SseEmitter.event().name(next.name).data(next.data.get()));
+            } catch (Exception e) {
+                // Client went away; generation carries on, we just stop reporting
+                synchronized (this) {
+                    closed = true;
+                }
+            }
+        }
+    }
+
+    private static class PendingEvent {
+        private final String name;
+        // Built by the sender, so preview encoding stays off the socket thread
+        private final Supplier<Object> data;
+
+        PendingEvent(String name, Supplier<Object> data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
 }
@@ -107,7 +107,7 @@ public class                           ComfyUIWorkflowTemplates {
       "inputs": {
         "width": 832,
         "height": 1248,
-        "batch_size": 1
+        "batch_size": %BATCH_SIZE%
       }
     }
 }
@@ -0,0 +1,193 @@
+package com.example.dosh.integration.intent;
+
+import com.example.dosh.config.IntentConfig;
+import com.example.dosh.model.dto.intent.IntentResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process intent classifier: a weighted keyword/n-gram table loaded from a TSV resource.
+ * The message is normalized, split into word n-grams and (for Chinese) character n-grams,
+ * and each label sums the weights of the terms it matches. Runs in microseconds, so
+ * IntentClient only asks the LLM when this is not confident enough.
+ * <p>
+ * One keyword is not enough to act on: "I love this video" mentions a video without
+ * asking for one. A label only gets its full confidence with a term marked "strong" in
+ * the model (a request phrase such as "draw me" or 生成视频) or two independent terms;
+ * otherwise its confidence is halved, which keeps it below any threshold above 0.5.
+ */
+@Slf4j
+@Component
+public class EmbeddedIntentClassifier {
+
+    private final List<String> labels = new ArrayList<>();
+    // term -> weight per label index
+    private final Map<String, double[]> terms = new HashMap<>();
+    private final Set<String> strongTerms = new HashSet<>();
+    private int maxWords = 1;
+    private int maxChars = 1;
+
+    @Autowired
+    public EmbeddedIntentClassifier(IntentConfig config, ResourceLoader resourceLoader) {
+        if (config.getEmbeddedModel() == null || config.getEmbeddedModel().isBlank()) {
+            log.info("No embedded intent model configured");
+            return;
+        }
+        Resource model = resourceLoader.getResource(config.getEmbeddedModel());
+        try (InputStream in = model.getInputStream()) {
+            load(in);
+            log.info("Loaded embedded intent model {}: {} terms, labels {}", config.getEmbeddedModel(), terms.size(), labels);
+        } catch (IOException e) {
+            log.warn("Embedded intent model {} not loaded, every intent goes to the provider: {}",
+                    config.getEmbeddedModel(), e.getMessage());
+        }
+    }
+
+    EmbeddedIntentClassifier(InputStream model) throws IOException {
+        load(model);
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /**
+     * @return the best label with confidence in [0, 1), or null when nothing matched
+     */
+    public IntentResponse classify(String text) {
+        if (terms.isEmpty() || text == null) {
+            return null;
+        }
+        String[] words = IntentClient.normalize(text).split(" ");
+        double[] scores = new double[labels.size()];
+        Set<String> hits = new HashSet<>();
+        boolean matched = false;
+
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].isEmpty()) continue;
+            StringBuilder phrase = new StringBuilder();
+            for (int n = 0; n < maxWords && i + n < words.length; n++) {
+                if (n > 0) phrase.append(' ');
+                phrase.append(words[i + n]);
+                matched |= add(phrase.toString(), scores, hits);
+            }
+            if (hasHan(words[i])) {
+                // Chinese is not space separated, so look at every character n-gram
+                String word = words[i];
+                for (int start = 0; start < word.length(); start++) {
+                    for (int end = start + 1; end <= Math.min(word.length(), start + maxChars); end++) {
+                        if (end - start == word.length()) continue; // whole word already looked up
+                        matched |= add(word.substring(start, end), scores, hits);
+                    }
+                }
+            }
+        }
+        if (!matched) {
+            return null;
+        }
+
+        int best = 0;
+        double total = 0;
+        for (int l = 0; l < scores.length; l++) {
+            total += scores[l];
+            if (scores[l] > scores[best]) best = l;
+        }
+        IntentResponse response = new IntentResponse();
+        response.setIntent(labels.get(best));
+        // The +1 keeps a single weak hint from looking certain
+        double confidence = scores[best] / (total + 1.0);
+        if (!enoughEvidence(best, hits)) {
+            confidence /= 2;
+        }
+        response.setConfidence(confidence);
+        return response;
+    }
+
+    private boolean add(String term, double[] scores, Set<String> hits) {
+        double[] weights = terms.get(term);
+        if (weights == null) {
+            return false;
+        }
+        for (int l = 0; l < weights.length; l++) {
+            scores[l] += weights[l];
+        }
+        hits.add(term);
+        return true;
+    }
+
+    // A strong term, or two terms for the label where neither is part of the other
+    // (画 inside 画一 is the same hit)
+    private boolean enoughEvidence(int label, Set<String> hits) {
+        List<String> labelHits = new ArrayList<>();
+        for (String term : hits) {
+            if (terms.get(term)[label] <= 0) continue;
+            if (strongTerms.contains(term)) {
+                return true;
+            }
+            labelHits.add(term);
+        }
+        int independent = 0;
+        for (String term : labelHits) {
+            boolean partOfAnother = labelHits.stream().anyMatch(other -> !other.equals(term) && other.contains(term));
+            if (!partOfAnother && ++independent >= 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void load(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String[]> rows = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            String[] parts = line.split("\t");
+            if (parts.length != 3 && (parts.length != 4 || !"strong".equals(parts[3].trim()))) {
+                throw new IOException("Bad intent model line: " + line);
+            }
+            if (!labels.contains(parts[0].trim())) {
+                labels.add(parts[0].trim());
+            }
+            rows.add(parts);
+        }
+        for (String[] row : rows) {
+            String term = IntentClient.normalize(row[2]);
+            if (term.isEmpty()) continue;
+            double[] weights = terms.computeIfAbsent(term, t -> new double[labels.size()]);
+            weights[labels.indexOf(row[0].trim())] += Double.parseDouble(row[1].trim());
+            if (row.length == 4) {
+                strongTerms.add(term);
+            }
+            if (hasHan(term) && !term.contains(" ")) {
+                maxChars = Math.max(maxChars, term.length());
+            } else {
+                maxWords = Math.max(maxWords, term.split(" ").length);
+            }
+        }
+    }
+
+    private static boolean hasHan(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.UnicodeScript.of(s.charAt(i)) == Character.UnicodeScript.HAN) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
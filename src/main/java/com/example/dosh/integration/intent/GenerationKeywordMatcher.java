@@ -0,0 +1,131 @@
+package com.example.dosh.integration.intent;
+
+import com.example.dosh.config.IntentConfig;
+import com.example.dosh.util.AhoCorasick;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells whether a message mentions any image/video generation keyword, scanning it once
+ * with an {@link AhoCorasick} automaton. Keywords come from ai.intent.keywords-file; when
+ * that is a file on disk it is re-read whenever it changes, and the automaton is swapped
+ * without blocking readers. Until a list has loaded, a short built-in one is used, so a
+ * missing or broken file can't make every message look like plain chat.
+ */
+@Slf4j
+@Component
+public class GenerationKeywordMatcher {
+
+    static final List<String> BUILT_IN_KEYWORDS = List.of(
+            "draw", "paint", "generate image", "create image", "make a picture",
+            "画", "绘", "图片", "做图",
+            "video", "movie", "generate video", "create video",
+            "视频", "生成视频");
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final ScheduledExecutorService watcher;
+    private volatile AhoCorasick automaton = new AhoCorasick(BUILT_IN_KEYWORDS);
+    private volatile long loadedModified;
+
+    public GenerationKeywordMatcher(IntentConfig config, ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+        this.location = config.getKeywordsFile();
+        if (!load()) {
+            log.warn("Using the {} built-in generation keywords until {} can be loaded", BUILT_IN_KEYWORDS.size(), location);
+        }
+
+        long interval = config.getKeywordsReloadSeconds();
+        if (interval > 0 && localFile() != null) {
+            watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "intent-keywords-watch");
+                t.setDaemon(true);
+                return t;
+            });
+            watcher.scheduleWithFixedDelay(this::reloadIfChanged, interval, interval, TimeUnit.SECONDS);
+        } else {
+            watcher = null;
+        }
+    }
+
+    public boolean matches(String text) {
+        return automaton.containsAny(text);
+    }
+
+    public List<String> getKeywords() {
+        return automaton.getKeywords();
+    }
+
+    /**
+     * Re-read the keyword list. A list that fails to load leaves the current one in place.
+     *
+     * @return the number of keywords now active
+     */
+    public synchronized int reload() {
+        load();
+        return automaton.getKeywords().size();
+    }
+
+    private synchronized boolean load() {
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            File file = localFile();
+            long modified = file != null ? file.lastModified() : 0;
+            List<String> keywords = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        keywords.add(line);
+                    }
+                }
+            }
+            automaton = new AhoCorasick(keywords);
+            loadedModified = modified;
+            log.info("Loaded {} generation keywords from {}", keywords.size(), location);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not load generation keywords from {}: {}", location, e.getMessage());
+            return false;
+        }
+    }
+
+    private void reloadIfChanged() {
+        File file = localFile();
+        if (file != null && file.lastModified() != loadedModified) {
+            reload();
+        }
+    }
+
+    // Only plain files can change under us; classpath entries inside a jar cannot
+    private File localFile() {
+        try {
+            Resource resource = resourceLoader.getResource(location);
+            return resource.isFile() ? resource.getFile() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+}
@@ -4,22 +4,61 @@ import com.example.dosh.config.IntentConfig;
 import com.example.dosh.integration.chatglm.ChatGLMClient;
 import com.example.dosh.model.dto.intent.IntentRequest;
 import com.example.dosh.model.dto.intent.IntentResponse;
+import com.example.dosh.util.LruCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class IntentClient {
 
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{P}\\p{S}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     private final RestTemplate restTemplate;
     private final IntentConfig intentConfig;
     private final ChatGLMClient chatGLMClient;
     private final ObjectMapper objectMapper;
+    private final EmbeddedIntentClassifier embeddedClassifier;
+    private final GenerationKeywordMatcher keywordMatcher;
+    private final HttpClient asyncClient;
+    // Classified intents by normalized text, so repeated prompts skip the model round trip
+    private final LruCache<String, IntentResponse> intentCache;
+
+    public IntentClient(RestTemplate restTemplate, IntentConfig intentConfig, ChatGLMClient chatGLMClient,
+                        ObjectMapper objectMapper, EmbeddedIntentClassifier embeddedClassifier,
+                        GenerationKeywordMatcher keywordMatcher) {
+        this.restTemplate = restTemplate;
+        this.intentConfig = intentConfig;
+        this.chatGLMClient = chatGLMClient;
+        this.objectMapper = objectMapper;
+        this.embeddedClassifier = embeddedClassifier;
+        this.keywordMatcher = keywordMatcher;
+        // Shares ChatGLM's bounded pool; without an executor HttpClient uses an unbounded one
+        this.asyncClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(chatGLMClient.getHttpExecutor())
+                .build();
+        this.intentCache = new LruCache<>(Math.max(1, intentConfig.getCacheSize()),
+                TimeUnit.MINUTES.toMillis(intentConfig.getCacheTtlMinutes()));
+    }
 
     /**
      * Call the intent recognition model (Local or LLM).
@@ -38,65 +77,147 @@ public class IntentClient {
             fastResp.setConfidence(1.0);
             return fastResp;
         }
+
+        IntentResponse embedded = classifyEmbedded(text);
+        if (embedded != null) {
+            return embedded;
+        }
+
+        String key = normalize(text);
+        IntentResponse cached = intentCache.get(key);
+        if (cached != null) {
+            log.info("Intent cache hit: {}", cached.getIntent());
+            return cached;
+        }
         
+        IntentResponse response;
         if ("chatglm".equalsIgnoreCase(intentConfig.getProvider())) {
-            return detectIntentWithLLM(text);
+            response = detectIntentWithLLM(text);
         } else {
-            return detectIntentLocal(text);
+            response = detectIntentLocal(text);
         }
+        cacheResult(key, response);
+        return response;
     }
 
-    private boolean isObviousChat(String text) {
-        if (text == null || text.trim().isEmpty()) return true;
-        String lower = text.toLowerCase();
-        // Keywords that SUGGEST image/video generation
-        String[] genKeywords = {
-            "draw", "paint", "generate image", "create image", "make a picture", 
-            "画", "绘", "图片", "做图",
-            "video", "movie", "generate video", "create video",
-            "视频", "生成视频"
-        };
-        
-        for (String kw : genKeywords) {
-            if (lower.contains(kw)) {
-                return false; // Might be generation, verify with LLM
+    /**
+     * Non-blocking {@link #detectIntent(String)}: nothing waits on the LLM or intent service.
+     */
+    public CompletableFuture<IntentResponse> detectIntentAsync(String text) {
+        if (isObviousChat(text)) {
+            log.info("Heuristic detected 'chat' intent, skipping LLM.");
+            IntentResponse fastResp = new IntentResponse();
+            fastResp.setIntent("chat");
+            fastResp.setConfidence(1.0);
+            return CompletableFuture.completedFuture(fastResp);
+        }
+
+        IntentResponse embedded = classifyEmbedded(text);
+        if (embedded != null) {
+            return CompletableFuture.completedFuture(embedded);
+        }
+
+        String key = normalize(text);
+        IntentResponse cached = intentCache.get(key);
+        if (cached != null) {
+            log.info("Intent cache hit: {}", cached.getIntent());
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<IntentResponse> result;
+        if ("chatglm".equalsIgnoreCase(intentConfig.getProvider())) {
+            result = chatGLMClient.generateAsync(intentPrompt(text)).thenApply(this::parseIntent);
+        } else {
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(intentConfig.getIntentUrl()))
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(new IntentRequest(text))))
+                        .build();
+                result = asyncClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                        .thenApply(response -> {
+                            // Error bodies must never be classified, let alone cached
+                            if (response.statusCode() / 100 != 2) {
+                                throw new RuntimeException("Intent service failed: HTTP " + response.statusCode());
+                            }
+                            try {
+                                return objectMapper.readValue(response.body(), IntentResponse.class);
+                            } catch (Exception e) {
+                                throw new RuntimeException("Bad intent service response: HTTP " + response.statusCode(), e);
+                            }
+                        });
+            } catch (Exception e) {
+                result = CompletableFuture.failedFuture(e);
             }
         }
-        return true; // Likely just chat
+        return result.thenApply(response -> {
+            cacheResult(key, response);
+            return response;
+        }).exceptionally(e -> {
+            log.error("Async intent recognition failed", e);
+            IntentResponse fallback = new IntentResponse();
+            fallback.setIntent("chat");
+            fallback.setConfidence(0.0);
+            return fallback;
+        });
     }
 
-    private IntentResponse detectIntentWithLLM(String text) {
-        try {
-            String prompt = String.format(
-                "You are an intelligent intent classifier. \n" +
-                "Classify the following user input into one of these categories:\n" +
-                "- image_generation (for drawing, painting, creating images)\n" +
-                "- video_generation (for making videos, movies)\n" +
-                "- chat (for everything else, general knowledge, questions, conversation)\n\n" +
-                "User Input: \"%s\"\n\n" +
-                "Return ONLY a valid JSON object with no markdown formatting, like this:\n" +
-                "{\"intent\": \"category_name\", \"confidence\": 0.95}", 
-                text
-            );
+    // The in-process model answers when it is confident; otherwise the provider decides
+    private IntentResponse classifyEmbedded(String text) {
+        IntentResponse response = embeddedClassifier.classify(text);
+        if (response == null) {
+            return null;
+        }
+        if (response.getConfidence() < intentConfig.getEmbeddedThreshold()) {
+            log.info("Embedded classifier unsure ({} at {}), asking provider", response.getIntent(),
+                    String.format("%.2f", response.getConfidence()));
+            return null;
+        }
+        log.info("Embedded classifier: {} ({})", response.getIntent(), String.format("%.2f", response.getConfidence()));
+        return response;
+    }
 
-            String responseStr = chatGLMClient.generate(prompt);
-            log.debug("LLM Intent Response: {}", responseStr);
-
-            // Clean up markdown code blocks if present
-            if (responseStr.startsWith("```json")) {
-                responseStr = responseStr.substring(7);
-                if (responseStr.endsWith("```")) {
-                    responseStr = responseStr.substring(0, responseStr.length() - 3);
-                }
-            } else if (responseStr.startsWith("```")) {
-                responseStr = responseStr.substring(3);
-                if (responseStr.endsWith("```")) {
-                    responseStr = responseStr.substring(0, responseStr.length() - 3);
-                }
-            }
-            
-            return objectMapper.readValue(responseStr.trim(), IntentResponse.class);
+    /**
+     * Hits, misses and size of the intent cache.
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = intentCache.getHits();
+        long misses = intentCache.getMisses();
+        stats.put("size", intentCache.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        stats.put("evictions", intentCache.getEvictions());
+        return stats;
+    }
 
+    /**
+     * Folds case, width, punctuation and whitespace so trivially different prompts share an
+     * entry: "Draw a cat!" and "draw  a cat" map to the same key.
+     */
+    static String normalize(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(PUNCTUATION.matcher(folded).replaceAll(" ")).replaceAll(" ").trim();
+    }
+
+    // Fallbacks after a failed call carry no confidence and must not stick
+    private void cacheResult(String key, IntentResponse response) {
+        if (response != null && response.getIntent() != null && response.getConfidence() > 0) {
+            intentCache.put(key, response);
+        }
+    }
+
+    private boolean isObviousChat(String text) {
+        if (text == null || text.trim().isEmpty()) return true;
+        // Any keyword that SUGGESTS image/video generation means we verify with the model
+        return !keywordMatcher.matches(text);
+    }
+
+    private IntentResponse detectIntentWithLLM(String text) {
+        try {
+            String responseStr = chatGLMClient.generate(intentPrompt(text));
+            return parseIntent(responseStr);
         } catch (Exception e) {
             log.error("Error using ChatGLM for intent recognition", e);
             IntentResponse fallback = new IntentResponse();
@@ -106,6 +227,43 @@ public class IntentClient {
         }
     }
 
+    private String intentPrompt(String text) {
+        return String.format(
+            "You are an intelligent intent classifier. \n" +
+            "Classify the following user input into one of these categories:\n" +
+            "- image_generation (for drawing, painting, creating images)\n" +
+            "- video_generation (for making videos, movies)\n" +
+            "- chat (for everything else, general knowledge, questions, conversation)\n\n" +
+            "User Input: \"%s\"\n\n" +
+            "Return ONLY a valid JSON object with no markdown formatting, like this:\n" +
+            "{\"intent\": \"category_name\", \"confidence\": 0.95}",
+            text
+        );
+    }
+
+    private IntentResponse parseIntent(String responseStr) {
+        log.debug("LLM Intent Response: {}", responseStr);
+
+        // Clean up markdown code blocks if present
+        if (responseStr.startsWith("```json")) {
+            responseStr = responseStr.substring(7);
+            if (responseStr.endsWith("```")) {
+                responseStr = responseStr.substring(0, responseStr.length() - 3);
+            }
+        } else if (responseStr.startsWith("```")) {
+            responseStr = responseStr.substring(3);
+            if (responseStr.endsWith("```")) {
+                responseStr = responseStr.substring(0, responseStr.length() - 3);
+            }
+        }
+
+        try {
+            return objectMapper.readValue(responseStr.trim(), IntentResponse.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Unparseable intent response: " + responseStr, e);
+        }
+    }
+
     private IntentResponse detectIntentLocal(String text) {
         try {
             IntentRequest request = new IntentRequest(text);
@@ -0,0 +1,89 @@
+package com.example.dosh.integration.volcengine;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * JSON request body with a file embedded as a Base64 data URL. The envelope is serialized
+ * once around a placeholder string and the file is encoded straight onto the sink in
+ * chunks, so memory use does not grow with the file size.
+ */
+class Base64FileRequestBody extends RequestBody {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int CHUNK_SIZE = 48 * 1024; // multiple of 3, so chunks encode without padding
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+    private final File file;
+
+    /**
+     * A fresh placeholder per request, so user text elsewhere in the envelope (the prompt)
+     * can't contain it by accident or on purpose.
+     */
+    static String newPlaceholder() {
+        return "__BASE64_FILE_" + UUID.randomUUID().toString().replace("-", "") + "__";
+    }
+
+    /**
+     * @param envelopeJson serialized payload containing {@code placeholder} exactly once as a string value
+     * @param placeholder  from {@link #newPlaceholder()}
+     * @param mimeType     type used for the data URL, e.g. video/mp4
+     */
+    Base64FileRequestBody(String envelopeJson, String placeholder, String mimeType, File file) {
+        int at = envelopeJson.indexOf(placeholder);
+        if (at < 0 || envelopeJson.indexOf(placeholder, at + placeholder.length()) >= 0) {
+            throw new IllegalArgumentException("Envelope must contain the file placeholder exactly once");
+        }
+        this.prefix = (envelopeJson.substring(0, at) + "data:" + mimeType + ";base64,").getBytes(StandardCharsets.UTF_8);
+        this.suffix = envelopeJson.substring(at + placeholder.length()).getBytes(StandardCharsets.UTF_8);
+        this.file = file;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        return prefix.length + 4 * ((file.length() + 2) / 3) + suffix.length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(prefix);
+        // Closing the encoder writes the final padding; the sink itself must stay open
+        OutputStream keepOpen = new FilterOutputStream(sink.outputStream()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        try (InputStream in = new FileInputStream(file);
+             OutputStream encoder = Base64.getEncoder().wrap(keepOpen)) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                encoder.write(buffer, 0, read);
+            }
+        }
+        sink.write(suffix);
+    }
+}
@@ -13,7 +13,9 @@ import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -32,42 +34,36 @@ public class VolcengineClient {
             .build();
 
     public List<VideoClipDTO> analyzeVideo(String videoUrlOrPath, String prompt) {
+        return analyzeVideo(videoUrlOrPath, prompt, null);
+    }
+
+    /**
+     * @param deadline max time for the whole analysis, the private-URL download and the API call
+     *                 together; null for the client defaults
+     */
+    public List<VideoClipDTO> analyzeVideo(String videoUrlOrPath, String prompt, Duration deadline) {
         log.info("Starting Volcengine AI analysis for: {}", videoUrlOrPath);
 
+        long deadlineAt = deadline != null ? System.nanoTime() + deadline.toNanos() : 0;
+        File tempFile = null;
         try {
             String videoContentString;
+            // File sent inline as Base64; its content is streamed in place of the placeholder
+            File inlineFile = null;
+            String placeholder = Base64FileRequestBody.newPlaceholder();
             // Check if input is a URL (starts with http:// or https://)
             if (videoUrlOrPath.startsWith("http://") || videoUrlOrPath.startsWith("https://")) {
-                boolean isLocal = false;
-                try {
-                    java.net.URL url = new java.net.URL(videoUrlOrPath);
-                    String host = url.getHost();
-                    isLocal = "localhost".equalsIgnoreCase(host) ||
-                            "127.0.0.1".equals(host) ||
-                            "::1".equals(host) ||
-                            host.startsWith("192.168.") ||
-                            host.startsWith("10.");
-                } catch (Exception ignored) {
-                }
-
-                if (isLocal) {
+                if (isPrivateUrl(videoUrlOrPath)) {
                     log.info("Detected local URL, falling back to download-and-Base64 strategy for Cloud AI compatibility.");
                     // Download file to temp
-                    File tempFile = File.createTempFile("volc_temp_", ".mp4");
-                    try {
-                        Request request = new Request.Builder().url(videoUrlOrPath).build();
-                        try (Response response = client.newCall(request).execute()) {
-                            if (!response.isSuccessful()) throw new IOException("Failed to download local video: " + response);
-                            Files.copy(response.body().byteStream(), tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                        }
-
-                        // Convert to Base64
-                        byte[] fileContent = Files.readAllBytes(tempFile.toPath());
-                        String videoBase64 = Base64.getEncoder().encodeToString(fileContent);
-                        videoContentString = "data:video/mp4;base64," + videoBase64;
-                    } finally {
-                        tempFile.delete();
+                    tempFile = File.createTempFile("volc_temp_", ".mp4");
+                    Request request = new Request.Builder().url(videoUrlOrPath).build();
+                    try (Response response = newCall(request, deadlineAt).execute()) {
+                        if (!response.isSuccessful()) throw new IOException("Failed to download local video: " + response);
+                        Files.copy(response.body().byteStream(), tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
                     }
+                    inlineFile = tempFile;
+                    videoContentString = placeholder;
                 } else {
                     // Use URL directly
                     videoContentString = videoUrlOrPath;
@@ -78,9 +74,8 @@ public class VolcengineClient {
                  if (videoFile.length() > 50 * 1024 * 1024) {
                     log.warn("Video file too large: {} MB", videoFile.length() / (1024.0 * 1024.0));
                  }
-                 byte[] fileContent = Files.readAllBytes(videoFile.toPath());
-                 String videoBase64 = Base64.getEncoder().encodeToString(fileContent);
-                 videoContentString = "data:video/mp4;base64," + videoBase64;
+                 inlineFile = videoFile;
+                 videoContentString = placeholder;
             }
 
             // 2. Build Request Body
@@ -108,7 +103,9 @@ public class VolcengineClient {
 
             String jsonBody = mapper.writeValueAsString(payload);
             MediaType JSON = MediaType.get("application/json; charset=utf-8");
-            RequestBody body = RequestBody.create(JSON, jsonBody);
+            RequestBody body = inlineFile != null
+                    ? new Base64FileRequestBody(jsonBody, placeholder, "video/mp4", inlineFile)
+                    : RequestBody.create(JSON, jsonBody);
 
             // 3. Send Request
             Request request = new Request.Builder()
@@ -118,7 +115,7 @@ public class VolcengineClient {
                     .post(body)
                     .build();
 
-            try (Response response = client.newCall(request).execute()) {
+            try (Response response = newCall(request, deadlineAt).execute()) {
                 if (!response.isSuccessful()) {
                     String errorBody = response.body() != null ? response.body().string() : "null";
                     log.error("Volcengine API call failed: code={}, body={}", response.code(), errorBody);
@@ -135,7 +132,40 @@ public class VolcengineClient {
         } catch (Exception e) {
             log.error("Volcengine analysis failed", e);
             throw new RuntimeException("AI analysis failed: " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * True for URLs on hosts the cloud API can't reach, whose content has to be sent inline.
+     */
+    public boolean isPrivateUrl(String videoUrl) {
+        try {
+            String host = new java.net.URL(videoUrl).getHost();
+            return "localhost".equalsIgnoreCase(host) ||
+                    "127.0.0.1".equals(host) ||
+                    "::1".equals(host) ||
+                    host.startsWith("192.168.") ||
+                    host.startsWith("10.");
+        } catch (Exception ignored) {
+            return false;
+        }
+    }
+
+    // Each call only gets what is left of the analysis deadline (0 = no deadline)
+    private Call newCall(Request request, long deadlineAt) throws IOException {
+        Call call = client.newCall(request);
+        if (deadlineAt != 0) {
+            long remaining = deadlineAt - System.nanoTime();
+            if (remaining <= 0) {
+                throw new InterruptedIOException("Analysis deadline exceeded");
+            }
+            call.timeout().timeout(remaining, TimeUnit.NANOSECONDS);
         }
+        return call;
     }
 
     private List<VideoClipDTO> parseResponse(String responseBody) throws IOException {
@@ -176,9 +206,10 @@ public class VolcengineClient {
              }
         }
         
+        // Failures throw rather than return an empty list, which would read (and be cached) as "no clips"
         if (jsonContent == null) {
             log.error("Could not extract text content from response: {}", responseBody);
-            return Collections.emptyList();
+            throw new IOException("Could not extract text content from the model response");
         }
 
         // Clean up markdown code blocks
@@ -210,7 +241,7 @@ public class VolcengineClient {
                  return clips;
             }
             log.error("Failed to parse JSON content", e);
-            return Collections.emptyList();
+            throw new IOException("Model response is not a clip list: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,24 @@
+package com.example.dosh.model.dto.video;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot of an asynchronous video generation job.
+ */
+@Data
+@NoArgsConstructor
+public class VideoJobDTO {
+    private String jobId;
+    private String status; // queued, running, succeeded, failed
+    private String stage;
+    private double percent;
+    private Map<String, Long> stageTimings = new LinkedHashMap<>(); // stage -> millis
+    private Map<String, Object> result;
+    private String error;
+    private long createdAt;
+    private Long finishedAt;
+}
@@ -0,0 +1,48 @@
+package com.example.dosh.model.dto.video;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Stream properties of a video as reported by ffprobe.
+ */
+@Data
+@NoArgsConstructor
+public class VideoMetadata {
+    private static final Set<String> COPYABLE_VIDEO_CODECS = Set.of("h264", "hevc");
+
+    private double duration;
+    private String videoCodec;
+    private String pixelFormat;
+    private int width;
+    private int height;
+    private double fps;
+    private String audioCodec; // null if the file has no audio stream
+    private int audioSampleRate;
+
+    /**
+     * Whether cuts of this video can go straight into an MP4 with {@code -c copy}.
+     */
+    public boolean isStreamCopyable() {
+        return videoCodec != null && COPYABLE_VIDEO_CODECS.contains(videoCodec)
+                && (audioCodec == null || "aac".equals(audioCodec));
+    }
+
+    /**
+     * Whether stream-copied cuts of this video and {@code other} can be joined by the concat demuxer.
+     */
+    public boolean isStreamCopyCompatible(VideoMetadata other) {
+        return other != null
+                && isStreamCopyable() && other.isStreamCopyable()
+                && Objects.equals(videoCodec, other.videoCodec)
+                && Objects.equals(pixelFormat, other.pixelFormat)
+                && width == other.width
+                && height == other.height
+                && Math.abs(fps - other.fps) < 0.01
+                && Objects.equals(audioCodec, other.audioCodec)
+                && audioSampleRate == other.audioSampleRate;
+    }
+}
@@ -7,4 +7,10 @@ public interface ChatService {
     // 已移除 chat(ChatRequestDTO request) 方法
 
     SseEmitter streamChat(ChatRequestDTO request);
+
+    /**
+     * Like {@link #streamChat}, but intent detection and the chat stream hold no thread
+     * while waiting on upstream services. Image and video turns still run on their pools.
+     */
+    SseEmitter streamChatAsync(ChatRequestDTO request);
 }
@@ -7,7 +7,55 @@ public interface MinioService {
 
     String uploadLocalFile(java.io.File file, String contentType) throws Exception;
 
+    /**
+     * Upload a stream of unknown length as a multipart upload, reading it only once.
+     * Every byte read is also written to {@code tee} when it is not null.
+     *
+     * @return the object name
+     */
+    String uploadStream(java.io.InputStream in, String fileExtension, String contentType, java.io.OutputStream tee) throws Exception;
+
+    /**
+     * Upload a stream whose length is known up front, without buffering it first.
+     * A negative {@code size} falls back to {@link #uploadStream(java.io.InputStream, String, String, java.io.OutputStream)}.
+     *
+     * @return the object name
+     */
+    String uploadStream(java.io.InputStream in, long size, String fileExtension, String contentType) throws Exception;
+
+    /**
+     * Upload the remaining bytes of {@code data} without copying them. The buffer's position
+     * is left untouched.
+     *
+     * @return the object name
+     */
+    String uploadBuffer(java.nio.ByteBuffer data, String fileExtension, String contentType) throws Exception;
+
     String getFileUrl(String objectName, int expiry) throws Exception;
 
     void deleteFile(String objectName) throws Exception;
+
+    /**
+     * @return the object name if {@code url} points into our bucket, otherwise null
+     */
+    String objectNameFromUrl(String url);
+
+    String getObjectETag(String objectName) throws Exception;
+
+    void downloadObject(String objectName, java.nio.file.Path target) throws Exception;
+
+    /**
+     * Store small content under a fixed object name, replacing any existing object.
+     */
+    void putBytes(String objectName, byte[] content, String contentType) throws Exception;
+
+    /**
+     * @return the object content, or null if there is no such object
+     */
+    byte[] getBytes(String objectName) throws Exception;
+
+    /**
+     * @return object name to last-modified epoch millis for every object under {@code prefix}
+     */
+    java.util.Map<String, Long> listObjects(String prefix) throws Exception;
 }
@@ -0,0 +1,37 @@
+package com.example.dosh.service.video;
+
+import com.example.dosh.model.dto.video.VideoJobDTO;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.InputStream;
+import java.util.List;
+
+public interface VideoJobService {
+    /**
+     * Queue an upload-and-generate job.
+     *
+     * @return the job id
+     */
+    String submit(MultipartFile file, String prompt, double targetDuration);
+
+    /**
+     * Stream a raw request body into object storage, keeping a local copy for extraction,
+     * then queue the generate job. Returns once the body has been fully read.
+     *
+     * @return the job id
+     */
+    String submitStream(InputStream body, String filename, String contentType, String prompt, double targetDuration);
+
+    String submitFromPaths(List<String> videoUrls, String prompt, double targetDuration);
+
+    /**
+     * @return the job, or null if unknown or expired
+     */
+    VideoJobDTO getJob(String jobId);
+
+    /**
+     * Stream job updates until it finishes, or null if the job is unknown.
+     */
+    SseEmitter subscribe(String jobId);
+}
@@ -0,0 +1,29 @@
+package com.example.dosh.service.video;
+
+import com.example.dosh.model.dto.video.VideoMetadata;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface VideoMetadataService {
+    /**
+     * @return metadata for a local path or URL, or null if it could not be probed
+     */
+    VideoMetadata getMetadata(String videoPath);
+
+    /**
+     * Probe several videos at once. Missing entries could not be probed.
+     */
+    Map<String, VideoMetadata> getMetadata(Collection<String> videoPaths);
+
+    /**
+     * @return sorted keyframe timestamps, or null if unavailable
+     */
+    List<Double> getKeyframes(String videoPath);
+
+    /**
+     * @return the last keyframe at or before {@code time}, or null if none is known
+     */
+    Double findKeyframeAtOrBefore(String videoPath, double time);
+}
@@ -0,0 +1,22 @@
+package com.example.dosh.service.video;
+
+/**
+ * Receives stage changes and overall progress of a video generation run.
+ */
+public interface VideoProgressListener {
+
+    VideoProgressListener NONE = new VideoProgressListener() {
+    };
+
+    /**
+     * A new pipeline stage started (e.g. "analyze", "extract", "merge", "upload").
+     */
+    default void onStage(String stage) {
+    }
+
+    /**
+     * @param percent overall progress of the run, 0-100
+     */
+    default void onProgress(double percent) {
+    }
+}
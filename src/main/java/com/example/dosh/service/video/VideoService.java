@@ -8,5 +8,6 @@ public interface VideoService {
     Map<String, Object> autoGenerateVideo(MultipartFile file, String prompt, double targetDuration);
     Map<String, Object> generateVideoFromBase64(List<String> base64Videos, String prompt, double targetDuration);
     Map<String, Object> generateVideoFromPaths(List<String> videoPaths, String prompt, double targetDuration);
+    Map<String, Object> generateVideoFromPaths(List<String> videoPaths, String prompt, double targetDuration, VideoProgressListener listener);
     String uploadVideo(MultipartFile file);
 }
@@ -0,0 +1,142 @@
+package com.example.dosh.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Immutable Aho-Corasick automaton over a fixed keyword set, matching case-insensitively.
+ * The text is scanned once no matter how many keywords there are, so checking a long
+ * pasted message against every keyword costs one pass instead of one pass per keyword.
+ * Failure links are folded into a full transition table, so each character costs two
+ * array reads and no backtracking.
+ */
+public class AhoCorasick {
+
+    // Column for every character that appears in no keyword
+    private static final int OTHER = 0;
+
+    // Character -> column in the transition table; upper and lower case share a column
+    private final short[] columns = new short[Character.MAX_VALUE + 1];
+    private final int width;
+    // transitions[state * width + column] -> next state
+    private final int[] transitions;
+    // Index of the keyword ending at this state (directly or via failure links), -1 if none
+    private final int[] output;
+    private final List<String> keywords;
+
+    public AhoCorasick(Collection<String> keywords) {
+        List<String> kept = new ArrayList<>();
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.isEmpty()) {
+                kept.add(keyword.toLowerCase(Locale.ROOT));
+            }
+        }
+        this.keywords = Collections.unmodifiableList(kept);
+
+        int alphabet = 1;
+        for (String keyword : kept) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (columns[c] == OTHER) {
+                    columns[c] = (short) alphabet;
+                    columns[Character.toUpperCase(c)] = (short) alphabet;
+                    columns[Character.toTitleCase(c)] = (short) alphabet;
+                    alphabet++;
+                }
+            }
+        }
+        this.width = alphabet;
+
+        // Trie first, as sparse child maps
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(new HashMap<>());
+        terminal.add(-1);
+        for (int k = 0; k < kept.size(); k++) {
+            String keyword = kept.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int column = columns[keyword.charAt(i)];
+                Integer next = children.get(state).get(column);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(column, next);
+                    children.add(new HashMap<>());
+                    terminal.add(-1);
+                }
+                state = next;
+            }
+            if (terminal.get(state) < 0) {
+                terminal.set(state, k);
+            }
+        }
+
+        int states = children.size();
+        this.transitions = new int[states * width];
+        this.output = new int[states];
+        int[] failure = new int[states];
+        for (int s = 0; s < states; s++) {
+            output[s] = terminal.get(s);
+        }
+
+        // Breadth-first, so a state's failure target is complete before the state itself
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (Map.Entry<Integer, Integer> child : children.get(0).entrySet()) {
+            transitions[child.getKey()] = child.getValue();
+            queue.add(child.getValue());
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fallback = failure[state];
+            if (output[state] < 0) {
+                output[state] = output[fallback];
+            }
+            for (int column = 0; column < width; column++) {
+                Integer child = children.get(state).get(column);
+                int viaFailure = transitions[fallback * width + column];
+                if (child == null) {
+                    transitions[state * width + column] = viaFailure;
+                } else {
+                    transitions[state * width + column] = child;
+                    failure[child] = viaFailure;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * @return true if any keyword occurs in {@code text}; stops at the first match
+     */
+    public boolean containsAny(CharSequence text) {
+        return firstMatch(text) != null;
+    }
+
+    /**
+     * @return the first keyword found scanning left to right, or null
+     */
+    public String firstMatch(CharSequence text) {
+        if (text == null || keywords.isEmpty()) {
+            return null;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * width + columns[text.charAt(i)]];
+            if (output[state] >= 0) {
+                return keywords.get(output[state]);
+            }
+        }
+        return null;
+    }
+}
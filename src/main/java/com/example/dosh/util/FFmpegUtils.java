@@ -1,5 +1,10 @@
 package com.example.dosh.util;
 
+import com.example.dosh.model.dto.video.VideoMetadata;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -10,8 +15,11 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.DoubleConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,6 +27,9 @@ import java.util.regex.Pattern;
 @Component
 public class FFmpegUtils {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final double KEYFRAME_SEARCH_WINDOW = 10.0;
+
     @org.springframework.beans.factory.annotation.Value("${ffmpeg.path:ffmpeg}")
     private String ffmpegPath;
 
@@ -58,6 +69,23 @@ public class FFmpegUtils {
     }
 
     public void extractClip(String videoPath, double start, double duration, String outputPath) throws IOException, InterruptedException {
+        extractClip(videoPath, start, duration, outputPath, 0);
+    }
+
+    /**
+     * @param threads encoder thread count for this process, 0 lets ffmpeg decide
+     */
+    public void extractClip(String videoPath, double start, double duration, String outputPath, int threads) throws IOException, InterruptedException {
+        extractClip(videoPath, start, duration, outputPath, threads, null);
+    }
+
+    /**
+     * Re-encode a clip. If {@code conformTo} is given, the clip is scaled, padded and
+     * re-timed to match it, so a re-encoding merge with stream-copied cuts of that source
+     * gets inputs of one size and frame rate.
+     */
+    public void extractClip(String videoPath, double start, double duration, String outputPath, int threads,
+                            VideoMetadata conformTo) throws IOException, InterruptedException {
         List<String> command = new ArrayList<>();
         command.add(ffmpegPath);
         command.add("-y"); // Overwrite
@@ -70,21 +98,219 @@ public class FFmpegUtils {
         // Add robust timestamp handling
         command.add("-avoid_negative_ts");
         command.add("make_zero");
-        // Enforce consistent framerate for concatenation
-        command.add("-r");
-        command.add("30");
-        command.add("-c:v");
-        command.add("libx264");
-        command.add("-c:a");
-        command.add("aac");
+        if (conformTo == null) {
+            // Enforce consistent framerate for concatenation
+            command.add("-r");
+            command.add("30");
+            command.add("-c:v");
+            command.add("libx264");
+            command.add("-c:a");
+            command.add("aac");
+        } else {
+            int w = conformTo.getWidth();
+            int h = conformTo.getHeight();
+            command.add("-vf");
+            command.add(String.format(Locale.ROOT,
+                    "scale=%d:%d:force_original_aspect_ratio=decrease,pad=%d:%d:(ow-iw)/2:(oh-ih)/2,setsar=1,fps=%.3f,format=%s",
+                    w, h, w, h, conformTo.getFps(), conformTo.getPixelFormat()));
+            command.add("-c:v");
+            command.add("hevc".equals(conformTo.getVideoCodec()) ? "libx265" : "libx264");
+            if (conformTo.getAudioCodec() == null) {
+                command.add("-an");
+            } else {
+                command.add("-c:a");
+                command.add("aac");
+                command.add("-ar");
+                command.add(String.valueOf(conformTo.getAudioSampleRate()));
+            }
+        }
         command.add("-strict");
         command.add("experimental");
+        if (threads > 0) {
+            command.add("-threads");
+            command.add(String.valueOf(threads));
+        }
+        command.add(outputPath);
+
+        runCommand(command);
+    }
+
+    /**
+     * Cut without re-encoding. {@code start} must be a keyframe of the source
+     * (see {@link #findKeyframeAtOrBefore}) or the clip will begin with broken frames.
+     */
+    public void copyClip(String videoPath, double start, double duration, String outputPath) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-y");
+        command.add("-ss");
+        command.add(String.valueOf(start));
+        command.add("-i");
+        command.add(videoPath);
+        command.add("-t");
+        command.add(String.valueOf(duration));
+        command.add("-map");
+        command.add("0:v:0");
+        command.add("-map");
+        command.add("0:a:0?");
+        command.add("-c");
+        command.add("copy");
+        command.add("-avoid_negative_ts");
+        command.add("make_zero");
+        command.add(outputPath);
+
+        runCommand(command);
+    }
+
+    /**
+     * Write a small, video-only copy for AI analysis: {@code fps} frames per second,
+     * {@code height} pixels high, capped at {@code bitrateKbps}. Timestamps are kept, so
+     * times reported against the proxy are valid for the source.
+     */
+    public void createAnalysisProxy(String videoPath, String outputPath, int height, int fps, int bitrateKbps) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-y");
+        command.add("-i");
+        command.add(videoPath);
+        command.add("-vf");
+        // Never upscale sources that are already small
+        command.add(String.format(Locale.ROOT, "fps=%d,scale=-2:'min(%d,ih)'", fps, height));
+        command.add("-an");
+        command.add("-c:v");
+        command.add("libx264");
+        command.add("-preset");
+        command.add("veryfast");
+        command.add("-b:v");
+        command.add(bitrateKbps + "k");
+        command.add("-maxrate");
+        command.add(bitrateKbps + "k");
+        command.add("-bufsize");
+        command.add((2 * bitrateKbps) + "k");
+        command.add("-pix_fmt");
+        command.add("yuv420p");
+        command.add("-movflags");
+        command.add("+faststart");
         command.add(outputPath);
 
         runCommand(command);
     }
 
+    /**
+     * Probe codecs, resolution, frame rate and duration of a video.
+     *
+     * @return the metadata, or null if ffprobe failed
+     */
+    public VideoMetadata probe(String videoPath) {
+        List<String> command = new ArrayList<>();
+        command.add(ffprobePath);
+        command.add("-v");
+        command.add("error");
+        command.add("-show_entries");
+        command.add("format=duration:stream=codec_type,codec_name,pix_fmt,width,height,avg_frame_rate,r_frame_rate,sample_rate");
+        command.add("-of");
+        command.add("json");
+        command.add(videoPath);
+
+        try {
+            String output = String.join("\n", readCommandOutput(command));
+            return parseProbeOutput(MAPPER.readTree(output));
+        } catch (Exception e) {
+            log.error("Failed to probe video: {}", videoPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * List all video keyframe timestamps by scanning packet flags (no decoding).
+     * This reads the whole file, so prefer it for local files.
+     *
+     * @return sorted keyframe timestamps in seconds, or null if ffprobe failed
+     */
+    public List<Double> listKeyframes(String videoPath) {
+        List<String> command = new ArrayList<>();
+        command.add(ffprobePath);
+        command.add("-v");
+        command.add("error");
+        command.add("-select_streams");
+        command.add("v:0");
+        command.add("-show_entries");
+        command.add("packet=pts_time,flags");
+        command.add("-of");
+        command.add("csv=p=0");
+        command.add(videoPath);
+
+        try {
+            List<Double> keyframes = new ArrayList<>();
+            for (String line : readCommandOutput(command)) {
+                String[] parts = line.split(",");
+                if (parts.length >= 2 && parts[1].contains("K") && !"N/A".equalsIgnoreCase(parts[0])) {
+                    keyframes.add(Double.parseDouble(parts[0]));
+                }
+            }
+            Collections.sort(keyframes);
+            return keyframes;
+        } catch (Exception e) {
+            log.warn("Failed to list keyframes of {}: {}", videoPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Find the last video keyframe at or before {@code time}, looking back at most
+     * {@code KEYFRAME_SEARCH_WINDOW} seconds.
+     *
+     * @return the keyframe timestamp in seconds, or null if none was found
+     */
+    public Double findKeyframeAtOrBefore(String videoPath, double time) {
+        List<String> command = new ArrayList<>();
+        command.add(ffprobePath);
+        command.add("-v");
+        command.add("error");
+        command.add("-select_streams");
+        command.add("v:0");
+        command.add("-skip_frame");
+        command.add("nokey");
+        command.add("-read_intervals");
+        command.add(String.format(Locale.ROOT, "%.3f%%%.3f", Math.max(0, time - KEYFRAME_SEARCH_WINDOW), time + 0.001));
+        command.add("-show_entries");
+        command.add("frame=best_effort_timestamp_time");
+        command.add("-of");
+        command.add("csv=p=0");
+        command.add(videoPath);
+
+        try {
+            Double best = null;
+            for (String line : readCommandOutput(command)) {
+                String value = line.replace(",", "").trim();
+                if (value.isEmpty() || "N/A".equalsIgnoreCase(value)) continue;
+                double ts = Double.parseDouble(value);
+                if (ts <= time + 0.001 && (best == null || ts > best)) {
+                    best = ts;
+                }
+            }
+            return best;
+        } catch (Exception e) {
+            log.warn("Failed to find keyframe in {} near {}s: {}", videoPath, time, e.getMessage());
+            return null;
+        }
+    }
+
     public void mergeClips(List<String> clipPaths, String outputPath) throws IOException, InterruptedException {
+        mergeClips(clipPaths, outputPath, false);
+    }
+
+    /**
+     * @param streamCopy join with {@code -c copy}; only valid when every clip shares codecs and stream parameters
+     */
+    public void mergeClips(List<String> clipPaths, String outputPath, boolean streamCopy) throws IOException, InterruptedException {
+        mergeClips(clipPaths, outputPath, streamCopy, null);
+    }
+
+    /**
+     * @param progress receives the merged output position in seconds, may be null
+     */
+    public void mergeClips(List<String> clipPaths, String outputPath, boolean streamCopy, DoubleConsumer progress) throws IOException, InterruptedException {
         // Create concat file
         File concatFile = new File("clips/concat_" + UUID.randomUUID() + ".txt");
         if (concatFile.getParentFile() != null) {
@@ -108,22 +334,89 @@ public class FFmpegUtils {
         command.add("0");
         command.add("-i");
         command.add(concatFile.getAbsolutePath());
-        // Re-encode during merge to ensure smooth transitions and fix audio/video sync gaps
-        command.add("-c:v");
-        command.add("libx264");
-        command.add("-c:a");
-        command.add("aac");
-        command.add("-strict");
-        command.add("experimental");
+        if (streamCopy) {
+            command.add("-c");
+            command.add("copy");
+        } else {
+            // Re-encode during merge to ensure smooth transitions and fix audio/video sync gaps
+            command.add("-c:v");
+            command.add("libx264");
+            command.add("-c:a");
+            command.add("aac");
+            command.add("-strict");
+            command.add("experimental");
+        }
         command.add(outputPath);
 
         try {
-            runCommand(command);
+            runCommand(command, progress);
         } finally {
             concatFile.delete();
         }
     }
     
+    /**
+     * Render several source ranges into one MP4 in a single decode/encode pass.
+     * Every range is scaled and padded to {@code width}x{@code height} at {@code fps};
+     * ranges without audio get silence so the concat filter lines up.
+     */
+    public void renderConcat(List<InputRange> ranges, String outputPath, int width, int height, double fps) throws IOException, InterruptedException {
+        renderConcat(ranges, outputPath, width, height, fps, null);
+    }
+
+    /**
+     * @param progress receives the rendered output position in seconds, may be null
+     */
+    public void renderConcat(List<InputRange> ranges, String outputPath, int width, int height, double fps,
+                             DoubleConsumer progress) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-y");
+        for (InputRange range : ranges) {
+            // Input seeking keeps each decoder close to its range instead of reading from 0
+            command.add("-ss");
+            command.add(String.valueOf(range.getStart()));
+            command.add("-t");
+            command.add(String.valueOf(range.getDuration()));
+            command.add("-i");
+            command.add(range.getSource());
+        }
+
+        StringBuilder graph = new StringBuilder();
+        StringBuilder concatInputs = new StringBuilder();
+        for (int i = 0; i < ranges.size(); i++) {
+            double d = ranges.get(i).getDuration();
+            graph.append(String.format(Locale.ROOT,
+                    "[%d:v:0]trim=duration=%.3f,setpts=PTS-STARTPTS,scale=%d:%d:force_original_aspect_ratio=decrease,"
+                            + "pad=%d:%d:(ow-iw)/2:(oh-ih)/2,setsar=1,fps=%.3f,format=yuv420p[v%d];",
+                    i, d, width, height, width, height, fps, i));
+            if (ranges.get(i).isHasAudio()) {
+                graph.append(String.format(Locale.ROOT,
+                        "[%d:a:0]atrim=duration=%.3f,asetpts=PTS-STARTPTS,aresample=48000,"
+                                + "aformat=sample_fmts=fltp:channel_layouts=stereo[a%d];", i, d, i));
+            } else {
+                graph.append(String.format(Locale.ROOT,
+                        "anullsrc=r=48000:cl=stereo,atrim=duration=%.3f,aformat=sample_fmts=fltp[a%d];", d, i));
+            }
+            concatInputs.append("[v").append(i).append("][a").append(i).append("]");
+        }
+        graph.append(concatInputs).append("concat=n=").append(ranges.size()).append(":v=1:a=1[outv][outa]");
+
+        command.add("-filter_complex");
+        command.add(graph.toString());
+        command.add("-map");
+        command.add("[outv]");
+        command.add("-map");
+        command.add("[outa]");
+        command.add("-c:v");
+        command.add("libx264");
+        command.add("-c:a");
+        command.add("aac");
+        command.add(outputPath);
+
+        runCommand(command, progress);
+    }
+
     // Convert time string "MM:SS.mmm" or "HH:MM:SS.mmm" to seconds
     public double timeStrToSeconds(String timeStr) {
         if (timeStr == null || timeStr.trim().isEmpty()) {
@@ -149,10 +442,91 @@ public class FFmpegUtils {
         }
     }
 
+    /**
+     * Inverse of {@link #timeStrToSeconds}, as mm:ss.SSS (minutes may exceed 59).
+     */
+    public String formatTime(double seconds) {
+        int m = (int) (seconds / 60);
+        int s = (int) (seconds % 60);
+        int ms = (int) ((seconds % 1) * 1000);
+        return String.format("%02d:%02d.%03d", m, s, ms);
+    }
+
+    private VideoMetadata parseProbeOutput(JsonNode root) {
+        VideoMetadata metadata = new VideoMetadata();
+        metadata.setDuration(root.path("format").path("duration").asDouble(0.0));
+        for (JsonNode stream : root.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            if ("video".equals(type) && metadata.getVideoCodec() == null) {
+                metadata.setVideoCodec(stream.path("codec_name").asText(null));
+                metadata.setPixelFormat(stream.path("pix_fmt").asText(null));
+                metadata.setWidth(stream.path("width").asInt());
+                metadata.setHeight(stream.path("height").asInt());
+                double fps = parseFrameRate(stream.path("avg_frame_rate").asText());
+                metadata.setFps(fps > 0 ? fps : parseFrameRate(stream.path("r_frame_rate").asText()));
+            } else if ("audio".equals(type) && metadata.getAudioCodec() == null) {
+                metadata.setAudioCodec(stream.path("codec_name").asText(null));
+                metadata.setAudioSampleRate(stream.path("sample_rate").asInt());
+            }
+        }
+        return metadata;
+    }
+
+    // Parse ffprobe rationals like "30000/1001"
+    private double parseFrameRate(String rate) {
+        try {
+            String[] parts = rate.split("/");
+            if (parts.length == 2) {
+                double den = Double.parseDouble(parts[1]);
+                return den == 0 ? 0.0 : Double.parseDouble(parts[0]) / den;
+            }
+            return Double.parseDouble(rate);
+        } catch (Exception e) {
+            return 0.0;
+        }
+    }
+
+    private List<String> readCommandOutput(List<String> command) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = pb.start();
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            if (process.waitFor() != 0) {
+                log.debug("Command exited with {}: {}", process.exitValue(), command.get(0));
+            }
+        }
+        return lines;
+    }
+
     private void runCommand(List<String> command) throws IOException, InterruptedException {
+        runCommand(command, null);
+    }
+
+    /**
+     * @param progress receives the output position in seconds as ffmpeg reports it, may be null
+     */
+    private void runCommand(List<String> command, DoubleConsumer progress) throws IOException, InterruptedException {
+        if (progress != null) {
+            // Machine-readable progress on stdout instead of the stats line on stderr
+            command = new ArrayList<>(command);
+            command.addAll(1, List.of("-progress", "pipe:1", "-nostats"));
+        }
         log.info("Running command: {}", String.join(" ", command));
         ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
+        if (progress != null) {
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        } else {
+            pb.redirectErrorStream(true);
+            // Discard output so the process never blocks on a full pipe
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        }
         Process process;
         try {
             process = pb.start();
@@ -163,18 +537,49 @@ public class FFmpegUtils {
             }
             throw e;
         }
-        
-        // Consume output to prevent blocking
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // log.debug(line); // Verbose
+
+        int exitCode;
+        try {
+            if (progress != null) {
+                readProgress(process, progress);
             }
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            // Cancelled (e.g. a sibling extraction failed) - don't leave ffmpeg running
+            process.destroyForcibly();
+            throw e;
         }
-        
-        int exitCode = process.waitFor();
         if (exitCode != 0) {
             throw new IOException("FFmpeg command failed with exit code " + exitCode);
         }
     }
+
+    // ffmpeg writes a key=value block roughly every 0.5s, so interrupts are noticed promptly
+    private void readProgress(Process process, DoubleConsumer progress) throws IOException, InterruptedException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("FFmpeg command cancelled");
+                }
+                // out_time_us is microseconds (out_time_ms is too, despite the name)
+                if (line.startsWith("out_time_us=")) {
+                    try {
+                        progress.accept(Long.parseLong(line.substring("out_time_us=".length()).trim()) / 1_000_000.0);
+                    } catch (NumberFormatException ignored) {
+                        // "N/A" before the first frame
+                    }
+                }
+            }
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class InputRange {
+        private String source;
+        private double start;
+        private double duration;
+        private boolean hasAudio;
+    }
 }
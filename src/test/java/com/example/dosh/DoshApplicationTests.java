@@ -3,7 +3,12 @@ package com.example.dosh;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// Keep the on-disk caches out of the checkout
+@SpringBootTest(properties = {
+        "video.processing.source-cache-dir=${java.io.tmpdir}/dosh-test-${random.uuid}/sources",
+        "video.processing.analysis-proxy-dir=${java.io.tmpdir}/dosh-test-${random.uuid}/proxies",
+        "video.processing.analysis-cache-dir=${java.io.tmpdir}/dosh-test-${random.uuid}/analysis"
+})
 class DoshApplicationTests {
 
     @Test
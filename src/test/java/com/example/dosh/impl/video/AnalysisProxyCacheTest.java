@@ -0,0 +1,86 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.service.video.VideoMetadataService;
+import com.example.dosh.util.FFmpegUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class AnalysisProxyCacheTest {
+
+    @TempDir
+    Path root;
+
+    private AnalysisProxyCache cache(int size) {
+        VideoProcessingConfig config = new VideoProcessingConfig();
+        config.setAnalysisProxy(true);
+        config.setAnalysisProxyCacheSize(size);
+        config.setAnalysisProxyDir(root.resolve("proxies").toString());
+        FFmpegUtils ffmpeg = new FFmpegUtils() {
+            @Override
+            public void createAnalysisProxy(String videoPath, String outputPath, int height, int fps, int bitrateKbps) throws java.io.IOException {
+                Files.writeString(Paths.get(outputPath), "proxy of " + videoPath);
+            }
+        };
+        return new AnalysisProxyCache(ffmpeg, mock(VideoMetadataService.class), config);
+    }
+
+    @Test
+    void leasedProxySurvivesEviction() throws Exception {
+        AnalysisProxyCache cache = cache(1);
+        Path first = Files.writeString(root.resolve("a.mp4"), "a");
+        Path second = Files.writeString(root.resolve("b.mp4"), "b");
+
+        AnalysisProxyCache.Lease leased = cache.getProxy(first.toString());
+        // Pushes the first proxy out of a one-entry cache while it is still leased
+        try (AnalysisProxyCache.Lease other = cache.getProxy(second.toString())) {
+            assertNotEquals(leased.getPath(), other.getPath());
+        }
+        assertTrue(Files.exists(Paths.get(leased.getPath())));
+
+        leased.close();
+        assertFalse(Files.exists(Paths.get(leased.getPath())));
+    }
+
+    @Test
+    void unleasedProxyIsDeletedOnEviction() throws Exception {
+        AnalysisProxyCache cache = cache(1);
+        Path first = Files.writeString(root.resolve("a.mp4"), "a");
+        Path second = Files.writeString(root.resolve("b.mp4"), "b");
+
+        String firstProxy;
+        try (AnalysisProxyCache.Lease lease = cache.getProxy(first.toString())) {
+            firstProxy = lease.getPath();
+        }
+        cache.getProxy(second.toString()).close();
+
+        assertFalse(Files.exists(Paths.get(firstProxy)));
+    }
+
+    @Test
+    void rebuildDoesNotTouchTheFileOfAnOlderLease() throws Exception {
+        AnalysisProxyCache cache = cache(1);
+        Path first = Files.writeString(root.resolve("a.mp4"), "a");
+        Path second = Files.writeString(root.resolve("b.mp4"), "b");
+
+        AnalysisProxyCache.Lease old = cache.getProxy(first.toString());
+        cache.getProxy(second.toString()).close();
+        // Evicted but still leased; the same source is needed again
+        AnalysisProxyCache.Lease rebuilt = cache.getProxy(first.toString());
+        assertNotEquals(old.getPath(), rebuilt.getPath());
+
+        old.close();
+        assertFalse(Files.exists(Paths.get(old.getPath())));
+        assertTrue(Files.exists(Paths.get(rebuilt.getPath())));
+        rebuilt.close();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.config.VolcengineConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AnalysisResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AnalysisResultCache cache(String model, boolean proxy) {
+        VideoProcessingConfig config = new VideoProcessingConfig();
+        config.setAnalysisCacheDir(tempDir.resolve("analysis").toString());
+        config.setAnalysisProxy(proxy);
+        VolcengineConfig volcengineConfig = new VolcengineConfig();
+        volcengineConfig.setModel(model);
+        return new AnalysisResultCache(config, volcengineConfig, null, new ObjectMapper());
+    }
+
+    @Test
+    void promptsDifferingOnlyInCaseSpacingAndTrailingPunctuationNormalizeAlike() {
+        assertEquals("find the goals", AnalysisResultCache.normalizePrompt("  Find   the\tGoals!! "));
+        assertEquals(AnalysisResultCache.normalizePrompt("find the goals"), AnalysisResultCache.normalizePrompt("FIND THE GOALS."));
+        assertNotEquals(AnalysisResultCache.normalizePrompt("find the goals"), AnalysisResultCache.normalizePrompt("find the fouls"));
+        assertEquals("", AnalysisResultCache.normalizePrompt(null));
+    }
+
+    @Test
+    void keyFollowsContentNotPath() throws Exception {
+        Path a = Files.writeString(tempDir.resolve("a.mp4"), "same bytes");
+        Path b = Files.writeString(tempDir.resolve("b.mp4"), "same bytes");
+        Path c = Files.writeString(tempDir.resolve("c.mp4"), "other bytes");
+        AnalysisResultCache cache = cache("model-a", false);
+
+        assertEquals(cache.cacheKey(a.toString(), "Goals"), cache.cacheKey(b.toString(), " goals."));
+        assertNotEquals(cache.cacheKey(a.toString(), "goals"), cache.cacheKey(c.toString(), "goals"));
+        assertNotEquals(cache.cacheKey(a.toString(), "goals"), cache.cacheKey(a.toString(), "fouls"));
+        assertNull(cache.cacheKey("http://example.com/a.mp4", "goals"));
+    }
+
+    @Test
+    void keyChangesWithModelAndWhatTheModelSees() throws Exception {
+        Path video = Files.writeString(tempDir.resolve("a.mp4"), "bytes");
+
+        String base = cache("model-a", false).cacheKey(video.toString(), "goals");
+        assertNotEquals(base, cache("model-b", false).cacheKey(video.toString(), "goals"));
+        assertNotEquals(base, cache("model-a", true).cacheKey(video.toString(), "goals"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.model.dto.video.VideoClipDTO;
+import com.example.dosh.util.FFmpegUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AnalysisWindowPlannerTest {
+
+    private AnalysisWindowPlanner planner(int segmentSeconds, int overlapSeconds) {
+        VideoProcessingConfig config = new VideoProcessingConfig();
+        config.setAnalysisSegmentSeconds(segmentSeconds);
+        config.setAnalysisSegmentOverlapSeconds(overlapSeconds);
+        return new AnalysisWindowPlanner(config, new FFmpegUtils());
+    }
+
+    @Test
+    void shortSourcesAreNotSplit() {
+        List<AnalysisWindowPlanner.Window> windows = planner(600, 15).plan(610);
+
+        assertEquals(1, windows.size());
+        assertEquals(610.0, windows.get(0).getDuration());
+    }
+
+    @Test
+    void windowsOverlapAndCoverTheWholeSource() {
+        List<AnalysisWindowPlanner.Window> windows = planner(600, 15).plan(3600);
+
+        for (int i = 1; i < windows.size(); i++) {
+            AnalysisWindowPlanner.Window previous = windows.get(i - 1);
+            assertEquals(15.0, previous.getStart() + previous.getDuration() - windows.get(i).getStart(), 1e-9);
+        }
+        AnalysisWindowPlanner.Window last = windows.get(windows.size() - 1);
+        assertEquals(3600.0, last.getStart() + last.getDuration(), 1e-9);
+    }
+
+    @Test
+    void shortTailIsFoldedIntoLastWindow() {
+        List<AnalysisWindowPlanner.Window> windows = planner(600, 15).plan(1195);
+
+        assertEquals(2, windows.size());
+        assertEquals(1195.0, windows.get(1).getStart() + windows.get(1).getDuration(), 1e-9);
+    }
+
+    @Test
+    void clipsAreOffsetAndDuplicatesInTheOverlapMerged() {
+        AnalysisWindowPlanner planner = planner(600, 15);
+        List<AnalysisWindowPlanner.Window> windows = List.of(
+                new AnalysisWindowPlanner.Window(0, 600), new AnalysisWindowPlanner.Window(585, 600));
+        List<List<VideoClipDTO>> clips = List.of(
+                List.of(new VideoClipDTO("00:10.000", "00:15.000", "intro", 5),
+                        new VideoClipDTO("09:50.000", "10:00.000", "goal", 10)),
+                List.of(new VideoClipDTO("00:04.000", "00:20.000", "goal and celebration", 16),
+                        new VideoClipDTO("01:00.000", "01:05.000", "replay", 5)));
+
+        List<VideoClipDTO> merged = planner.merge(windows, clips);
+
+        assertEquals(3, merged.size());
+        assertEquals("00:10.000", merged.get(0).getStartTime());
+        assertEquals("09:49.000", merged.get(1).getStartTime());
+        assertEquals("10:05.000", merged.get(1).getEndTime());
+        assertEquals("goal and celebration", merged.get(1).getEvent());
+        assertEquals("10:45.000", merged.get(2).getStartTime());
+    }
+}
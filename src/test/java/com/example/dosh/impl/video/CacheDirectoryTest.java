@@ -0,0 +1,41 @@
+package com.example.dosh.impl.video;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CacheDirectoryTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void refusesDirectoryItDidNotCreate() throws Exception {
+        Path dir = root.resolve("shared");
+        Files.createDirectories(dir);
+        Path unrelated = Files.writeString(dir.resolve("notes.txt"), "keep me");
+
+        assertThrows(IllegalStateException.class, () -> CacheDirectory.claim(dir, "source", "source_"));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    @Test
+    void onlyDeletesItsOwnFiles() throws Exception {
+        Path dir = root.resolve("cache");
+        CacheDirectory.claim(dir, "proxy", "proxy_");
+        Path stale = Files.writeString(dir.resolve("proxy_abc.mp4"), "x");
+        Path other = Files.writeString(dir.resolve("other.mp4"), "y");
+
+        CacheDirectory.claim(dir, "proxy", "proxy_");
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(other));
+        assertThrows(IllegalStateException.class, () -> CacheDirectory.claim(dir, "source", "source_"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrimPlannerTest {
+
+    private TrimPlanner planner(Long seed) {
+        VideoProcessingConfig config = new VideoProcessingConfig();
+        config.setTrimSeed(seed);
+        return new TrimPlanner(config);
+    }
+
+    @Test
+    void clipsThatFitAreLeftWhole() {
+        List<TrimPlanner.Trim> trims = planner(1L).plan(List.of(10.0, 20.0), 60.0);
+
+        assertEquals(0.0, trims.get(0).getOffset());
+        assertEquals(10.0, trims.get(0).getDuration());
+        assertEquals(20.0, trims.get(1).getDuration());
+    }
+
+    @Test
+    void overLengthClipsAreTrimmedToTarget() {
+        List<TrimPlanner.Trim> trims = planner(1L).plan(List.of(30.0, 60.0, 30.0), 60.0);
+
+        double total = trims.stream().mapToDouble(TrimPlanner.Trim::getDuration).sum();
+        assertEquals(60.0, total, 1e-9);
+        assertEquals(15.0, trims.get(0).getDuration(), 1e-9);
+        assertEquals(30.0, trims.get(1).getDuration(), 1e-9);
+    }
+
+    @Test
+    void sameSeedGivesSamePlan() {
+        List<Double> durations = List.of(12.0, 8.0, 25.0);
+
+        List<TrimPlanner.Trim> first = planner(42L).plan(durations, 20.0);
+        List<TrimPlanner.Trim> second = planner(42L).plan(durations, 20.0);
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void shortClipsKeepMinimumDuration() {
+        List<TrimPlanner.Trim> trims = planner(1L).plan(List.of(0.6, 100.0), 10.0);
+
+        assertEquals(TrimPlanner.MIN_CLIP_DURATION, trims.get(0).getDuration());
+        assertEquals(0.0, trims.get(0).getOffset());
+    }
+
+    @Test
+    void keyframeAlignedPlanMatchesExtractedTotal() {
+        TrimPlanner planner = planner(7L);
+        double[] clipStarts = {0.7, 40.3, 100.9};
+        List<TrimPlanner.Trim> trims = planner.plan(List.of(30.0, 60.0, 30.0), 60.0);
+
+        double extracted = 0;
+        for (int i = 0; i < trims.size(); i++) {
+            TrimPlanner.Trim trim = trims.get(i);
+            double cutStart = clipStarts[i] + trim.getOffset();
+            // Source with a keyframe every 2 seconds
+            double keyframe = Math.floor(cutStart / 2.0) * 2.0;
+            TrimPlanner.Trim aligned = planner.alignToKeyframe(trim, keyframe - clipStarts[i]);
+            if (aligned == null) {
+                // Re-encoded: cut exactly as planned
+                extracted += trim.getDuration();
+            } else {
+                // A copy cut from the keyframe writes exactly the requested duration
+                assertEquals(keyframe, clipStarts[i] + aligned.getOffset(), 1e-9);
+                extracted += aligned.getDuration();
+            }
+        }
+        assertEquals(60.0, extracted, 1e-9);
+    }
+
+    @Test
+    void keyframeOutsideTheCutMeansReencode() {
+        TrimPlanner planner = planner(1L);
+        TrimPlanner.Trim trim = new TrimPlanner.Trim(3.0, 5.0);
+
+        assertNull(planner.alignToKeyframe(trim, null));
+        assertNull(planner.alignToKeyframe(trim, -TrimPlanner.MAX_KEYFRAME_LEAD - 0.5));
+        assertNull(planner.alignToKeyframe(trim, 3.5));
+        TrimPlanner.Trim aligned = planner.alignToKeyframe(trim, -0.5);
+        assertEquals(-0.5, aligned.getOffset());
+        assertEquals(5.0, aligned.getDuration());
+        assertTrue(planner.alignToKeyframe(trim, 3.0).getOffset() <= trim.getOffset());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.dosh.impl.video;
+
+import com.example.dosh.config.VideoProcessingConfig;
+import com.example.dosh.config.VolcengineConfig;
+import com.example.dosh.integration.volcengine.VolcengineClient;
+import com.example.dosh.model.dto.video.VideoClipDTO;
+import com.example.dosh.model.dto.video.VideoMetadata;
+import com.example.dosh.service.video.VideoMetadataService;
+import com.example.dosh.util.FFmpegUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VideoAnalysisDispatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final VolcengineClient volcengine = mock(VolcengineClient.class);
+    private final VideoMetadataService metadataService = mock(VideoMetadataService.class);
+    private AnalysisResultCache resultCache;
+    private VideoAnalysisDispatcher dispatcher;
+
+    private void setUp(int segmentSeconds, double sourceDuration) {
+        VideoProcessingConfig config = new VideoProcessingConfig();
+        config.setAnalysisCacheDir(tempDir.resolve("analysis").toString());
+        config.setAnalysisSegmentSeconds(segmentSeconds);
+        config.setAnalysisSegmentOverlapSeconds(0);
+        VolcengineConfig volcengineConfig = new VolcengineConfig();
+        volcengineConfig.setModel("model-a");
+        FFmpegUtils ffmpeg = mock(FFmpegUtils.class);
+        resultCache = new AnalysisResultCache(config, volcengineConfig, null, new ObjectMapper());
+        VideoMetadata meta = new VideoMetadata();
+        meta.setDuration(sourceDuration);
+        when(metadataService.getMetadata(anyString())).thenReturn(meta);
+        // Every window starts on a keyframe
+        when(metadataService.findKeyframeAtOrBefore(anyString(), anyDouble())).thenAnswer(i -> i.getArgument(1));
+        dispatcher = new VideoAnalysisDispatcher(volcengine, new AnalysisProxyCache(ffmpeg, metadataService, config),
+                new AnalysisWindowPlanner(config, new FFmpegUtils()), resultCache, metadataService, ffmpeg, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    private String video() throws Exception {
+        return Files.writeString(tempDir.resolve("source.mp4"), "video bytes").toString();
+    }
+
+    @Test
+    void successfulResultIsCachedAndReplayed() throws Exception {
+        setUp(0, 60);
+        String video = video();
+        AtomicInteger calls = new AtomicInteger();
+        when(volcengine.analyzeVideo(anyString(), anyString(), any())).thenAnswer(i -> {
+            calls.incrementAndGet();
+            return List.of(new VideoClipDTO("00:01.000", "00:05.000", "goal", 4.0));
+        });
+
+        dispatcher.analyze("http://bucket/source.mp4", video, "goals").get();
+        List<VideoClipDTO> replayed = dispatcher.analyze("http://bucket/source.mp4", video, "Goals.").get();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, replayed.size());
+        assertNotNull(resultCache.get(resultCache.cacheKey(video, "goals")));
+    }
+
+    @Test
+    void failedAnalysisIsNotCached() throws Exception {
+        setUp(0, 60);
+        String video = video();
+        when(volcengine.analyzeVideo(anyString(), anyString(), any())).thenThrow(new RuntimeException("AI analysis failed: unparseable"));
+
+        assertThrows(ExecutionException.class, () -> dispatcher.analyze("http://bucket/source.mp4", video, "goals").get());
+        assertNull(resultCache.get(resultCache.cacheKey(video, "goals")));
+    }
+
+    @Test
+    void incompleteWindowedResultIsNotCached() throws Exception {
+        setUp(100, 300);
+        String video = video();
+        AtomicInteger calls = new AtomicInteger();
+        when(volcengine.analyzeVideo(anyString(), anyString(), any())).thenAnswer(i -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new RuntimeException("AI analysis failed");
+            }
+            return List.of(new VideoClipDTO("00:01.000", "00:05.000", "goal", 4.0));
+        });
+
+        List<VideoClipDTO> clips = dispatcher.analyze("http://bucket/source.mp4", video, "goals").get();
+
+        assertEquals(3, calls.get());
+        assertEquals(2, clips.size());
+        assertNull(resultCache.get(resultCache.cacheKey(video, "goals")));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.dosh.integration.chatglm;
+
+import com.example.dosh.config.ChatGLMConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatGLMStreamSubscriberTest {
+
+    private static String delta(String content) {
+        return "data: {\"choices\":[{\"delta\":{\"content\":\"" + content + "\"}}]}";
+    }
+
+    private static ChatGLMStreamSubscriber subscriber(RecordingEmitter emitter) {
+        return new ChatGLMStreamSubscriber(emitter, new ObjectMapper(), Runnable::run, null, 0);
+    }
+
+    @Test
+    void doneCompletesTheEmitterAndStopsReading() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        RecordingSubscription subscription = new RecordingSubscription();
+        ChatGLMStreamSubscriber subscriber = subscriber(emitter);
+
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(delta("Hel"));
+        subscriber.onNext("");
+        subscriber.onNext(delta("lo"));
+        subscriber.onNext("data: [DONE]");
+        subscriber.onComplete();
+
+        assertEquals(List.of("Hel", "lo"), emitter.sent);
+        assertEquals(1, emitter.completions);
+        assertTrue(subscription.cancelled);
+        // One line at a time: the initial request plus one per line before [DONE]
+        assertEquals(4, subscription.requested.get());
+    }
+
+    @Test
+    void clientDisconnectCancelsUpstream() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        RecordingSubscription subscription = new RecordingSubscription();
+        ChatGLMStreamSubscriber subscriber = subscriber(emitter);
+
+        subscriber.onSubscribe(subscription);
+        emitter.disconnected = true;
+        subscriber.onNext(delta("Hel"));
+
+        assertTrue(subscription.cancelled);
+        assertEquals(1, subscription.requested.get());
+        // Cancelling ends the body, which must not be reported to the gone client
+        subscriber.onError(new IOException("cancelled"));
+        assertNull(emitter.error.getNow(null));
+    }
+
+    @Test
+    void nonOkResponseFailsTheEmitter() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{\"error\":\"rate limited\"}".getBytes();
+            exchange.sendResponseHeaders(429, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        ChatGLMConfig config = new ChatGLMConfig();
+        ReflectionTestUtils.setField(config, "apiUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        ReflectionTestUtils.setField(config, "apiKey", "test");
+        ReflectionTestUtils.setField(config, "model", "glm-4.5");
+        ReflectionTestUtils.setField(config, "httpThreads", 1);
+        ReflectionTestUtils.setField(config, "writeThreads", 1);
+        ChatGLMClient client = new ChatGLMClient(config, new ObjectMapper());
+        try {
+            RecordingEmitter emitter = new RecordingEmitter();
+            client.streamGenerateAsync("hi", emitter);
+
+            Throwable error = emitter.error.get(10, TimeUnit.SECONDS);
+            assertTrue(error.getMessage().contains("429"), error.getMessage());
+            assertTrue(emitter.sent.isEmpty());
+        } finally {
+            client.shutdown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void slowClientDoesNotBlockTheReadingThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.release = release;
+        RecordingSubscription subscription = new RecordingSubscription();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            ChatGLMStreamSubscriber subscriber = new ChatGLMStreamSubscriber(emitter, new ObjectMapper(), writer, null, 0);
+            subscriber.onSubscribe(subscription);
+
+            // Returns although the write is stuck; the next line waits for the write
+            subscriber.onNext(delta("Hel"));
+            assertEquals(1, subscription.requested.get());
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (subscription.requested.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, subscription.requested.get());
+            assertEquals(List.of("Hel"), emitter.sent);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void quietUpstreamTimesOut() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        RecordingSubscription subscription = new RecordingSubscription();
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ChatGLMStreamSubscriber subscriber = new ChatGLMStreamSubscriber(emitter, new ObjectMapper(), Runnable::run, watchdog, 200);
+            subscriber.onSubscribe(subscription);
+
+            Throwable error = emitter.error.get(5, TimeUnit.SECONDS);
+            assertInstanceOf(TimeoutException.class, error);
+            assertTrue(subscription.cancelled);
+        } finally {
+            watchdog.shutdownNow();
+        }
+    }
+
+    private static class RecordingSubscription implements Flow.Subscription {
+        private final AtomicInteger requested = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet((int) n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new ArrayList<>();
+        private final CompletableFuture<Throwable> error = new CompletableFuture<>();
+        private volatile boolean disconnected;
+        private volatile CountDownLatch release;
+        private int completions;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (disconnected) {
+                throw new IOException("Broken pipe");
+            }
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (!(part.getData() instanceof String text) || !text.startsWith("data:") && !text.equals("\n\n")) {
+                    sent.add(String.valueOf(part.getData()));
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completions++;
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            error.complete(ex);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.dosh.integration.comfyui;
+
+import com.example.dosh.config.ComfyUIConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComfyUIBackendPoolTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private ComfyUIBackendPool pool;
+
+    // Stub ComfyUI whose /queue reports the given number of pending prompts
+    private String stub(int pending) throws Exception {
+        return stub(pending, new AtomicBoolean());
+    }
+
+    // Same, answering 503 while failing is set
+    private String stub(int pending, AtomicBoolean failing) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/queue", exchange -> {
+            if (failing.get()) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            StringBuilder queue = new StringBuilder("{\"queue_running\":[],\"queue_pending\":[");
+            for (int i = 0; i < pending; i++) {
+                queue.append(i == 0 ? "" : ",").append("[").append(i).append("]");
+            }
+            byte[] body = queue.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private ComfyUIBackendPool pool(String... addresses) {
+        ComfyUIConfig config = new ComfyUIConfig();
+        config.setServers(List.of(addresses));
+        pool = new ComfyUIBackendPool(config, new ObjectMapper());
+        pool.refresh();
+        return pool;
+    }
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(s -> s.stop(0));
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void picksTheLeastLoadedBackend() throws Exception {
+        String busy = stub(3);
+        String quiet = stub(0);
+        ComfyUIBackendPool pool = pool(busy, quiet);
+
+        assertEquals(quiet, pool.acquire(Set.of()));
+        assertEquals(busy, pool.acquire(Set.of(quiet)));
+    }
+
+    @Test
+    void countsOwnPromptsBeforeTheQueueShowsThem() throws Exception {
+        String first = stub(0);
+        String second = stub(0);
+        ComfyUIBackendPool pool = pool(first, second);
+
+        String a = pool.acquire(Set.of());
+        String b = pool.acquire(Set.of());
+        assertNotEquals(a, b);
+
+        pool.release(a);
+        assertEquals(a, pool.acquire(Set.of()));
+    }
+
+    @Test
+    void unreachableBackendIsSkippedAndReported() throws Exception {
+        String up = stub(5);
+        String down = stub(0);
+        List<String> reported = new ArrayList<>();
+        ComfyUIConfig config = new ComfyUIConfig();
+        config.setServers(List.of(up, down));
+        pool = new ComfyUIBackendPool(config, new ObjectMapper());
+        pool.addDownListener(reported::add);
+
+        servers.get(1).stop(0);
+        pool.refresh();
+        pool.refresh();
+        assertTrue(reported.isEmpty());
+        pool.refresh();
+
+        assertEquals(List.of(down), reported);
+        assertFalse(pool.isHealthy(down));
+        assertEquals(up, pool.acquire(Set.of()));
+        assertThrows(ComfyUIBackendPool.BackendDownException.class, () -> pool.acquire(Set.of(up)));
+    }
+
+    @Test
+    void singleFailedPollKeepsBackendAndRecoveryIsReported() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        String flaky = stub(0, failing);
+        String spare = stub(0);
+        List<String> down = new ArrayList<>();
+        List<String> up = new ArrayList<>();
+        ComfyUIConfig config = new ComfyUIConfig();
+        config.setServers(List.of(flaky, spare));
+        config.setDownAfterFailures(2);
+        pool = new ComfyUIBackendPool(config, new ObjectMapper());
+        pool.addDownListener(down::add);
+        pool.addUpListener(up::add);
+
+        failing.set(true);
+        pool.refresh();
+        failing.set(false);
+        pool.refresh();
+        failing.set(true);
+        pool.refresh();
+        assertTrue(pool.isHealthy(flaky));
+        assertTrue(down.isEmpty());
+
+        pool.refresh();
+        assertFalse(pool.isHealthy(flaky));
+        assertEquals(List.of(flaky), down);
+
+        failing.set(false);
+        pool.refresh();
+        assertTrue(pool.isHealthy(flaky));
+        assertEquals(List.of(flaky), up);
+    }
+
+    @Test
+    void onlyBackendIsNeverFailedOver() throws Exception {
+        String only = stub(0);
+        List<String> down = new ArrayList<>();
+        ComfyUIConfig config = new ComfyUIConfig();
+        config.setServers(List.of(only));
+        pool = new ComfyUIBackendPool(config, new ObjectMapper());
+        pool.addDownListener(down::add);
+
+        servers.get(0).stop(0);
+        for (int i = 0; i < 5; i++) {
+            pool.refresh();
+        }
+
+        // Its prompts keep waiting for the server to come back instead of failing
+        assertFalse(pool.isHealthy(only));
+        assertTrue(down.isEmpty());
+    }
+}
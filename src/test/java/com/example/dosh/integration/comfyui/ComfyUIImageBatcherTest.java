@@ -0,0 +1,65 @@
+package com.example.dosh.integration.comfyui;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComfyUIImageBatcherTest {
+
+    @Test
+    void identicalPromptsShareOneBatch() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        ComfyUIImageBatcher batcher = new ComfyUIImageBatcher(5_000, 3, (prompt, size, listener) -> {
+            batchSizes.add(size);
+            List<String> urls = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                urls.add(prompt + "#" + i);
+            }
+            return urls;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(pool.submit(() -> batcher.generate("a cat", ComfyUIProgressListener.NONE)));
+            }
+            List<String> all = new ArrayList<>();
+            for (Future<List<String>> result : results) {
+                List<String> urls = result.get();
+                assertEquals(1, urls.size());
+                all.addAll(urls);
+            }
+            // Full batch runs right away instead of waiting out the window
+            assertEquals(List.of(3), batchSizes);
+            assertEquals(3, all.stream().distinct().count());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresReachEveryCaller() {
+        ComfyUIImageBatcher batcher = new ComfyUIImageBatcher(10, 4, (prompt, size, listener) -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThrows(IllegalStateException.class, () -> batcher.generate("a dog", ComfyUIProgressListener.NONE));
+    }
+
+    @Test
+    void shareSplitsEvenly() {
+        List<String> urls = List.of("1", "2", "3", "4", "5");
+
+        assertEquals(List.of("1", "2"), ComfyUIImageBatcher.share(urls, 0, 2));
+        assertEquals(List.of("3", "4", "5"), ComfyUIImageBatcher.share(urls, 1, 2));
+        assertEquals(urls, ComfyUIImageBatcher.share(urls, 3, 6));
+    }
+}
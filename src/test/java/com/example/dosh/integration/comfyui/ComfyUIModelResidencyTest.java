@@ -0,0 +1,41 @@
+package com.example.dosh.integration.comfyui;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ComfyUIModelResidencyTest {
+
+    private final AtomicInteger frees = new AtomicInteger();
+    private final ComfyUIModelResidency residency =
+            new ComfyUIModelResidency(ComfyUIModelResidency.POLICY_IDLE, 0, frees::incrementAndGet, null);
+
+    @Test
+    void switchWhileIdleFreesBeforeTheNewPrompt() {
+        residency.beforePrompt("a");
+        residency.afterPrompt();
+        residency.beforePrompt("b");
+
+        assertEquals(1, frees.get());
+    }
+
+    @Test
+    void switchWhilePromptsRunFreesOnceTheyFinish() {
+        residency.beforePrompt("a");
+        residency.beforePrompt("b");
+        residency.beforePrompt("c");
+        assertEquals(0, frees.get());
+
+        residency.afterPrompt();
+        residency.afterPrompt();
+        assertEquals(0, frees.get());
+        residency.afterPrompt();
+        assertEquals(1, frees.get());
+
+        // Everything was unloaded, so the next workflow starts clean
+        residency.beforePrompt("a");
+        assertEquals(1, frees.get());
+    }
+}
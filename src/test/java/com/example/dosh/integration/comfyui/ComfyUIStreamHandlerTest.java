@@ -0,0 +1,96 @@
+package com.example.dosh.integration.comfyui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ComfyUIStreamHandlerTest {
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        sender.shutdownNow();
+    }
+
+    @Test
+    void stepsAreThrottledButTheLastOneGoesOut() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        ComfyUIStreamHandler handler = new ComfyUIStreamHandler(emitter, Runnable::run);
+
+        for (int step = 1; step <= 20; step++) {
+            handler.onStep("3", step, 20);
+        }
+
+        assertEquals(List.of("progress", "progress"), emitter.names);
+        assertEquals(1, emitter.data.get(0).get("step"));
+        assertEquals(20, emitter.data.get(1).get("step"));
+    }
+
+    @Test
+    void slowClientDoesNotHoldUpTheSocketThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(release);
+        ComfyUIStreamHandler handler = new ComfyUIStreamHandler(emitter, sender);
+
+        // The first send blocks; everything after it has to queue behind it
+        handler.onNode("3", "KSampler");
+        handler.onStep("3", 5, 5);
+        handler.onPreview("3", ByteBuffer.wrap(new byte[]{1, 2, 3}), "image/jpeg");
+        handler.onStep("3", 6, 6);
+        handler.onStep("3", 7, 7);
+        handler.onNode("9", "SaveImage");
+        handler.onFinished();
+
+        release.countDown();
+        handler.flush(TimeUnit.SECONDS.toMillis(5));
+
+        // Only the newest progress survives; node, preview and timings all arrive in order
+        assertEquals(List.of("node", "preview", "progress", "node", "timings"), emitter.names);
+        assertEquals(7, emitter.data.get(2).get("step"));
+        assertTrue(emitter.data.get(1).get("image").toString().startsWith("data:image/jpeg;base64,"));
+    }
+
+    // Records event names and data; blocks the first send until released
+    private static class RecordingEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final List<String> names = new ArrayList<>();
+        private final List<Map<?, ?>> data = new ArrayList<>();
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) throws IOException {
+            if (release != null && names.isEmpty()) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text && text.startsWith("event:")) {
+                    names.add(text.substring("event:".length(), text.indexOf('\n')));
+                } else if (part.getData() instanceof Map<?, ?> map) {
+                    data.add(map);
+                }
+            }
+        }
+    }
+}
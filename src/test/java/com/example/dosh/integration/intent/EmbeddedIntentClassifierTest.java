@@ -0,0 +1,62 @@
+package com.example.dosh.integration.intent;
+
+import com.example.dosh.model.dto.intent.IntentResponse;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddedIntentClassifierTest {
+
+    private static final double THRESHOLD = 0.6;
+    private static EmbeddedIntentClassifier classifier;
+
+    @BeforeAll
+    static void load() throws Exception {
+        try (InputStream in = EmbeddedIntentClassifierTest.class.getResourceAsStream("/intent/intent-model.tsv")) {
+            classifier = new EmbeddedIntentClassifier(in);
+        }
+    }
+
+    private void assertConfident(String text, String intent) {
+        IntentResponse response = classifier.classify(text);
+        assertNotNull(response, text);
+        assertEquals(intent, response.getIntent(), text);
+        assertTrue(response.getConfidence() >= THRESHOLD, text + " -> " + response.getConfidence());
+    }
+
+    @Test
+    void clearRequestsAreConfident() {
+        assertConfident("Draw me a cat in watercolor", "image_generation");
+        assertConfident("帮我画一只猫", "image_generation");
+        assertConfident("Make a highlight video from these clips", "video_generation");
+        assertConfident("把这段视频剪辑成一分钟", "video_generation");
+    }
+
+    private void assertNotConfident(String text) {
+        IntentResponse response = classifier.classify(text);
+        assertTrue(response == null || response.getConfidence() < THRESHOLD,
+                text + " -> " + response.getIntent() + " " + response.getConfidence());
+    }
+
+    @Test
+    void singleTopicWordIsNotARequest() {
+        assertNotConfident("这幅画很好看");
+        assertNotConfident("I love this video");
+        assertNotConfident("My favourite movie is Inception");
+    }
+
+    @Test
+    void questionsAboutMediaAreLeftToTheLlm() {
+        IntentResponse response = classifier.classify("What is the best video codec?");
+        assertNotNull(response);
+        assertTrue(response.getConfidence() < THRESHOLD, "confidence " + response.getConfidence());
+    }
+
+    @Test
+    void unknownTextHasNoAnswer() {
+        assertNull(classifier.classify("hello there"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.dosh.integration.intent;
+
+import com.example.dosh.config.IntentConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GenerationKeywordMatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private GenerationKeywordMatcher matcher;
+
+    private GenerationKeywordMatcher matcher(String location, long reloadSeconds) {
+        IntentConfig config = new IntentConfig();
+        ReflectionTestUtils.setField(config, "keywordsFile", location);
+        ReflectionTestUtils.setField(config, "keywordsReloadSeconds", reloadSeconds);
+        matcher = new GenerationKeywordMatcher(config, new DefaultResourceLoader());
+        return matcher;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (matcher != null) {
+            matcher.shutdown();
+        }
+    }
+
+    @Test
+    void missingFileFallsBackToBuiltInKeywords() {
+        GenerationKeywordMatcher matcher = matcher("file:" + dir.resolve("missing.txt"), 0);
+
+        assertTrue(matcher.matches("draw a cat"));
+        assertTrue(matcher.matches("剪个视频"));
+        assertFalse(matcher.matches("what's the weather like"));
+    }
+
+    @Test
+    void changedFileIsReloaded() throws Exception {
+        Path file = Files.writeString(dir.resolve("keywords.txt"), "# test list\ndraw\n");
+        GenerationKeywordMatcher matcher = matcher("file:" + file, 1);
+        assertTrue(matcher.matches("draw a cat"));
+        assertFalse(matcher.matches("make a montage"));
+
+        Files.writeString(file, "montage\n");
+        // Coarse file systems may not see a change within the same second
+        file.toFile().setLastModified(file.toFile().lastModified() + 5000);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!matcher.matches("make a montage") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue(matcher.matches("make a montage"));
+        assertFalse(matcher.matches("draw a cat"));
+    }
+}
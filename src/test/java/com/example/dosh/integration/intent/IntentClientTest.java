@@ -0,0 +1,26 @@
+package com.example.dosh.integration.intent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class IntentClientTest {
+
+    @Test
+    void normalizeFoldsCaseWhitespaceAndPunctuation() {
+        assertEquals("draw a cat", IntentClient.normalize("  Draw   a CAT!! "));
+        assertEquals(IntentClient.normalize("draw a cat"), IntentClient.normalize("Draw a cat."));
+    }
+
+    @Test
+    void normalizeFoldsFullWidthChinesePunctuation() {
+        assertEquals(IntentClient.normalize("画一只猫"), IntentClient.normalize("画一只猫！"));
+        assertEquals(IntentClient.normalize("ＡＢＣ，画"), IntentClient.normalize("abc, 画"));
+    }
+
+    @Test
+    void differentWordsStayDifferent() {
+        assertNotEquals(IntentClient.normalize("draw a cat"), IntentClient.normalize("draw a dog"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.dosh.integration.volcengine;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Base64FileRequestBodyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File videoFile(byte[] content) throws Exception {
+        File file = tempDir.resolve("video_" + content.length + ".mp4").toFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    @Test
+    void matchesInMemoryEncodingForAnySize() throws Exception {
+        // Around the chunk boundary and every padding remainder
+        for (int size : new int[]{0, 1, 2, 3, 48 * 1024 - 1, 48 * 1024, 48 * 1024 + 1, 200_000}) {
+            byte[] content = new byte[size];
+            new Random(size).nextBytes(content);
+            String placeholder = Base64FileRequestBody.newPlaceholder();
+            String envelope = "{\"video_url\":\"" + placeholder + "\",\"fps\":1}";
+            Base64FileRequestBody body = new Base64FileRequestBody(envelope, placeholder, "video/mp4", videoFile(content));
+            Buffer sink = new Buffer();
+            body.writeTo(sink);
+
+            byte[] expected = ("{\"video_url\":\"data:video/mp4;base64," + Base64.getEncoder().encodeToString(content) + "\",\"fps\":1}").getBytes();
+            assertEquals(expected.length, body.contentLength(), "length at size " + size);
+            assertArrayEquals(expected, sink.readByteArray(), "body at size " + size);
+        }
+    }
+
+    @Test
+    void promptCannotCarryThePlaceholder() throws Exception {
+        File file = videoFile(new byte[]{1, 2, 3});
+        String placeholder = Base64FileRequestBody.newPlaceholder();
+
+        assertNotEquals(placeholder, Base64FileRequestBody.newPlaceholder());
+        // The same placeholder twice (e.g. echoed in the prompt) is refused rather than spliced into the wrong field
+        String twice = "{\"text\":\"" + placeholder + "\",\"video_url\":\"" + placeholder + "\"}";
+        assertThrows(IllegalArgumentException.class, () -> new Base64FileRequestBody(twice, placeholder, "video/mp4", file));
+
+        String envelope = "{\"text\":\"__BASE64_FILE_CONTENT__\",\"video_url\":\"" + placeholder + "\"}";
+        Buffer sink = new Buffer();
+        new Base64FileRequestBody(envelope, placeholder, "video/mp4", file).writeTo(sink);
+        assertEquals("{\"text\":\"__BASE64_FILE_CONTENT__\",\"video_url\":\"data:video/mp4;base64,AQID\"}", sink.readUtf8());
+    }
+}
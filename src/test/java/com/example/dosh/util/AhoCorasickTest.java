@@ -0,0 +1,44 @@
+package com.example.dosh.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickTest {
+
+    private final AhoCorasick matcher = new AhoCorasick(List.of("draw", "generate video", "video", "视频", "画"));
+
+    @Test
+    void findsKeywordsAnywhereIgnoringCase() {
+        assertTrue(matcher.containsAny("Could you DRAW a cat?"));
+        assertTrue(matcher.containsAny("帮我画一只猫"));
+        assertTrue(matcher.containsAny("做个视频"));
+        assertFalse(matcher.containsAny("what's the weather like"));
+    }
+
+    @Test
+    void followsFailureLinksAcrossPartialMatches() {
+        // "generate vid" is a dead end, the match is "video" further on
+        assertEquals("video", new AhoCorasick(List.of("generate video!", "video")).firstMatch("generate video"));
+        assertEquals("she", new AhoCorasick(List.of("he", "she", "hers")).firstMatch("ushers"));
+        assertTrue(new AhoCorasick(List.of("aab")).containsAny("aaab"));
+    }
+
+    @Test
+    void agreesWithContainsLoop() {
+        List<String> keywords = List.of("ab", "bc", "abcd", "cab", "d");
+        AhoCorasick automaton = new AhoCorasick(keywords);
+        String[] texts = {"", "a", "ab", "xbcx", "cacab", "aaaa", "abd", "cccc", "xyz"};
+        for (String text : texts) {
+            boolean expected = keywords.stream().anyMatch(text::contains);
+            assertEquals(expected, automaton.containsAny(text), text);
+        }
+    }
+
+    @Test
+    void emptyKeywordSetNeverMatches() {
+        assertFalse(new AhoCorasick(List.of()).containsAny("anything"));
+    }
+}
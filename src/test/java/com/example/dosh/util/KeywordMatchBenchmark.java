@@ -0,0 +1,71 @@
+package com.example.dosh.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation-keyword check on chat messages: the old lowercase + contains-per-keyword loop
+ * against {@link AhoCorasick}. The interesting case is a long pasted text with no keyword,
+ * which the loop scans once per keyword. Run main() from the IDE, or from a shell:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) com.example.dosh.util.KeywordMatchBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordMatchBenchmark {
+
+    private static final String[] KEYWORDS = {
+            "draw", "paint", "generate image", "create image", "make a picture",
+            "画", "绘", "图片", "做图",
+            "video", "movie", "generate video", "create video",
+            "视频", "生成视频"
+    };
+
+    @Param({"40", "4000", "40000"})
+    private int length;
+
+    private String text;
+    private AhoCorasick automaton;
+
+    @Setup
+    public void setup() {
+        // Pasted prose without any keyword: the worst case for both
+        String sentence = "Please summarise the quarterly report, 请总结一下这份季度报告中的要点. ";
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append(sentence);
+        }
+        text = sb.substring(0, length);
+        automaton = new AhoCorasick(List.of(KEYWORDS));
+    }
+
+    @Benchmark
+    public boolean containsLoop() {
+        String lower = text.toLowerCase();
+        for (String kw : KEYWORDS) {
+            if (lower.contains(kw)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean ahoCorasick() {
+        return automaton.containsAny(text);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(KeywordMatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}